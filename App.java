@@ -1,845 +1,6740 @@
-import java.io.*;
-import java.text.SimpleDateFormat;
-import java.util.*;
-
-
-// Enums for better data modeling
-enum DisasterType { FLOOD, EARTHQUAKE, FIRE, CYCLONE, OTHER }
-enum Severity { LOW, MEDIUM, HIGH, CRITICAL }
-enum TeamSpecialty { MEDICAL, RESCUE, LOGISTICS, FIREFIGHTING, OTHER }
-
-// Disaster class
-class Disaster {
-    private static int idCounter = 1;
-    private int id;
-    private DisasterType type;
-    private String location;
-    private Severity severity;
-    private String date;
-    private String description;
-
-    public Disaster(DisasterType type, String location, Severity severity, String date, String description) {
-        this.id = idCounter++;
-        this.type = type;
-        this.location = location;
-        this.severity = severity;
-        this.date = date;
-        this.description = description;
-    }
-
-    public int getId() { return id; }
-    public DisasterType getType() { return type; }
-    public String getLocation() { return location; }
-    public Severity getSeverity() { return severity; }
-    public String getDate() { return date; }
-    public String getDescription() { return description; }
-
-    @Override
-    public String toString() {
-        return "Disaster ID: " + id + ", Type: " + type + ", Location: " + location +
-               ", Severity: " + severity + ", Date: " + date + ", Description: " + description;
-    }
-
-    public String serialize() {
-        return id + "," + type + "," + location + "," + severity + "," + date + "," + description.replace(",", ";");
-    }
-
-    public static Disaster deserialize(String line) {
-        String[] parts = line.split(",", 6);
-        if (parts.length < 6) return null;
-        Disaster d = new Disaster(
-            DisasterType.valueOf(parts[1]),
-            parts[2],
-            Severity.valueOf(parts[3]),
-            parts[4],
-            parts[5].replace(";", ",")
-        );
-        d.id = Integer.parseInt(parts[0]);
-        if (d.id >= idCounter) idCounter = d.id + 1;
-        return d;
-    }
-}
-
-// Victim class
-class Victim {
-    private static int idCounter = 1;
-    private int id;
-    private String name;
-    private int age;
-    private String contact;
-    private String injuryLevel;
-    private int disasterId;
-
-    public Victim(String name, int age, String contact, String injuryLevel, int disasterId) {
-        this.id = idCounter++;
-        this.name = name;
-        this.age = age;
-        this.contact = contact;
-        this.injuryLevel = injuryLevel;
-        this.disasterId = disasterId;
-    }
-
-    public int getId() { return id; }
-    public String getName() { return name; }
-    public int getAge() { return age; }
-    public String getContact() { return contact; }
-    public String getInjuryLevel() { return injuryLevel; }
-    public int getDisasterId() { return disasterId; }
-
-    @Override
-    public String toString() {
-        return "Victim ID: " + id + ", Name: " + name + ", Age: " + age + ", Contact: " + contact +
-               ", Injury Level: " + injuryLevel + ", Disaster ID: " + disasterId;
-    }
-
-    public String serialize() {
-        return id + "," + name + "," + age + "," + contact.replace(",", ";") + "," + injuryLevel + "," + disasterId;
-    }
-
-    public static Victim deserialize(String line) {
-        String[] parts = line.split(",", 6);
-        if (parts.length < 6) return null;
-        Victim v = new Victim(
-            parts[1],
-            Integer.parseInt(parts[2]),
-            parts[3].replace(";", ","),
-            parts[4],
-            Integer.parseInt(parts[5])
-        );
-        v.id = Integer.parseInt(parts[0]);
-        if (v.id >= idCounter) idCounter = v.id + 1;
-        return v;
-    }
-}
-
-// RescueTeam class
-class RescueTeam {
-    private static int idCounter = 1;
-    private int id;
-    private String teamName;
-    private TeamSpecialty specialty;
-    private int assignedDisasterId;
-    private String status;
-
-    public RescueTeam(String teamName, TeamSpecialty specialty, int assignedDisasterId, String status) {
-        this.id = idCounter++;
-        this.teamName = teamName;
-        this.specialty = specialty;
-        this.assignedDisasterId = assignedDisasterId;
-        this.status = status;
-    }
-
-    public int getId() { return id; }
-    public String getTeamName() { return teamName; }
-    public TeamSpecialty getSpecialty() { return specialty; }
-    public int getAssignedDisasterId() { return assignedDisasterId; }
-    public String getStatus() { return status; }
-
-    @Override
-    public String toString() {
-        return "Team ID: " + id + ", Team: " + teamName + ", Specialty: " + specialty +
-               ", Assigned to Disaster ID: " + assignedDisasterId + ", Status: " + status;
-    }
-
-    public String serialize() {
-        return id + "," + teamName + "," + specialty + "," + assignedDisasterId + "," + status.replace(",", ";");
-    }
-
-    public static RescueTeam deserialize(String line) {
-        String[] parts = line.split(",", 5);
-        if (parts.length < 5) return null;
-        RescueTeam t = new RescueTeam(
-            parts[1],
-            TeamSpecialty.valueOf(parts[2]),
-            Integer.parseInt(parts[3]),
-            parts[4].replace(";", ",")
-        );
-        t.id = Integer.parseInt(parts[0]);
-        if (t.id >= idCounter) idCounter = t.id + 1;
-        return t;
-    }
-}
-
-// DataHandler class
-class DataHandler {
-    public static <T> void saveToFile(String filename, List<T> data, java.util.function.Function<T, String> serializer) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            for (T obj : data) {
-                writer.write(serializer.apply(obj));
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            System.out.println("Error saving file: " + e.getMessage());
-        }
-    }
-
-    public static <T> List<T> loadFromFile(String filename, java.util.function.Function<String, T> deserializer) {
-        List<T> data = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                T obj = deserializer.apply(line);
-                if (obj != null) data.add(obj);
-            }
-        } catch (IOException e) {
-            
-        }
-        return data;
-    }
-
-    public static void saveLogs(String filename, List<String> logs) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            for (String log : logs) {
-                writer.write(log);
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            System.out.println("Error saving logs: " + e.getMessage());
-        }
-    }
-
-    public static List<String> loadLogs(String filename) {
-        List<String> logs = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                logs.add(line);
-            }
-        } catch (IOException e) {
-            // Ignore if logs don't exist yet
-        }
-        return logs;
-    }
-}
-
-// User class for authentication
-class User {
-    private String username;
-    private String password;
-    private String role; // "admin" or "user"
-
-    public User(String username, String password, String role) {
-        this.username = username;
-        this.password = password;
-        this.role = role;
-    }
-
-    public String getUsername() { return username; }
-    public String getPassword() { return password; }
-    public String getRole() { return role; }
-
-    public String serialize() {
-        return username + "," + password + "," + role;
-    }
-
-    public static User deserialize(String line) {
-        String[] parts = line.split(",", 3);
-        if (parts.length < 3) return null;
-        return new User(parts[0], parts[1], parts[2]);
-    }
-}
-
-// Main class
-public class App {
-    static List<Disaster> disasters = new ArrayList<>();
-    static List<Victim> victims = new ArrayList<>();
-    static List<RescueTeam> teams = new ArrayList<>();
-    static List<User> users = new ArrayList<>();
-    static List<String> logs = new ArrayList<>();
-    static User currentUser = null;
-    static Scanner sc = new Scanner(System.in);
-
-    // Undo/Redo stacks
-    static Stack<Runnable> undoStack = new Stack<>();
-    static Stack<Runnable> redoStack = new Stack<>();
-
-    // Per-disaster timeline logs
-    static Map<Integer, List<String>> disasterTimelines = new HashMap<>();
-
-    public static void main(String[] args) {
-        // Load data
-        disasters = DataHandler.loadFromFile("disasters.txt", Disaster::deserialize);
-        victims = DataHandler.loadFromFile("victims.txt", Victim::deserialize);
-        teams = DataHandler.loadFromFile("teams.txt", RescueTeam::deserialize);
-        users = DataHandler.loadFromFile("users.txt", User::deserialize);
-        logs = DataHandler.loadLogs("logs.txt");
-
-        if (users.isEmpty()) {
-            System.out.println("No users found. Please register a new user.");
-            registerUser();
-        }
-        if (!login()) {
-            System.out.println("Too many failed attempts. Exiting.");
-            return;
-        }
-        int choice;
-        do {
-            System.out.println("\n--- Disaster Management System ---");
-            System.out.println("Logged in as: " + currentUser.getUsername() + " (" + currentUser.getRole() + ")");
-            System.out.println("1. Add Disaster");
-            System.out.println("2. View All Disasters");
-            System.out.println("3. Add Victim");
-            System.out.println("4. Assign Rescue Team");
-            System.out.println("5. View Report");
-            System.out.println("6. Save Data");
-            System.out.println("7. Load Data");
-            System.out.println("8. Register New User");
-            System.out.println("9. Edit/Delete Data");
-            System.out.println("10. View Logs");
-            System.out.println("11. Save Logs");
-            System.out.println("12. Statistics");
-            System.out.println("13. Search/Filter");
-            System.out.println("14. Sort");
-            System.out.println("15. Undo");
-            System.out.println("16. Redo");
-            System.out.println("17. Alerts");
-            System.out.println("18. Change Password");
-            System.out.println("19. Export Disasters CSV");
-            System.out.println("20. View Disaster Timeline");
-            System.out.println("21. Exit");
-            System.out.print("Enter your choice: ");
-            int menuChoice = getIntInput("");
-            choice = menuChoice;
-
-            switch (choice) {
-                case 1 -> requireAdmin(App::addDisaster);
-                case 2 -> viewDisasters();
-                case 3 -> requireAdmin(App::addVictim);
-                case 4 -> requireAdmin(App::assignRescueTeam);
-                case 5 -> viewReport();
-                case 6 -> requireAdmin(App::saveData);
-                case 7 -> loadData();
-                case 8 -> registerUser();
-                case 9 -> requireAdmin(App::editOrDeleteMenu);
-                case 10 -> viewLogs();
-                case 11 -> saveLogs();
-                case 12 -> showStatistics();
-                case 13 -> searchMenu();
-                case 14 -> sortMenu();
-                case 15 -> undo();
-                case 16 -> redo();
-                case 17 -> showAlerts();
-                case 18 -> changePassword();
-                case 19 -> exportDisastersCSV();
-                case 20 -> viewDisasterTimeline();
-                case 21 -> System.out.println("Exiting...");
-                default -> System.out.println("Invalid choice!");
-            }
-
-        } while (choice != 21);
-    }
-
-    // Registration method
-    static void registerUser() {
-        System.out.print("Enter new username: ");
-        String uname = sc.nextLine();
-        for (User u : users) {
-            if (u.getUsername().equals(uname)) {
-                System.out.println("Username already exists. Registration failed.");
-                return;
-            }
-        }
-        System.out.print("Enter new password: ");
-        String pwd = sc.nextLine();
-        String role;
-        while (true) {
-            System.out.print("Enter role (admin/user): ");
-            role = sc.nextLine().trim().toLowerCase();
-            if (role.equals("admin") || role.equals("user")) break;
-            System.out.println("Invalid role. Please enter 'admin' or 'user'.");
-        }
-        users.add(new User(uname, pwd, role));
-        logs.add(logEntry("User registered: " + uname + " as " + role));
-        DataHandler.saveToFile("users.txt", users, User::serialize);
-        System.out.println("User registered successfully!");
-    }
-
-    // Login method
-    static boolean login() {
-        int attempts = 0;
-        while (attempts < 3) {
-            System.out.print("Username: ");
-            String uname = sc.nextLine();
-            System.out.print("Password: ");
-            String pwd = sc.nextLine();
-            for (User u : users) {
-                if (u.getUsername().equals(uname) && u.getPassword().equals(pwd)) {
-                    currentUser = u;
-                    logs.add(logEntry("Login: " + uname));
-                    System.out.println("Login successful!");
-                    return true;
-                }
-            }
-            System.out.println("Invalid credentials. Try again.");
-            attempts++;
-        }
-        return false;
-    }
-
-    // Require admin role for certain actions
-    static void requireAdmin(Runnable action) {
-        if (currentUser != null && "admin".equals(currentUser.getRole())) {
-            action.run();
-        } else {
-            System.out.println("Access denied. Admins only.");
-        }
-    }
-
-    // Input validation for integer
-    static int getIntInput(String prompt) {
-        while (true) {
-            System.out.print(prompt);
-            try {
-                return Integer.parseInt(sc.nextLine());
-            } catch (NumberFormatException e) {
-                System.out.println("Invalid number. Try again.");
-            }
-        }
-    }
-
-    // Add Disaster with Undo
-    static void addDisaster() {
-        System.out.println("Available types: " + Arrays.toString(DisasterType.values()));
-        System.out.print("Enter Type: ");
-        DisasterType type = DisasterType.valueOf(sc.nextLine().trim().toUpperCase());
-        System.out.print("Enter Location: ");
-        String location = sc.nextLine();
-        System.out.println("Available severity: " + Arrays.toString(Severity.values()));
-        System.out.print("Enter Severity: ");
-        Severity severity = Severity.valueOf(sc.nextLine().trim().toUpperCase());
-        System.out.print("Enter Date (dd-MM-yyyy): ");
-        String date = sc.nextLine();
-        System.out.print("Enter Description: ");
-        String description = sc.nextLine();
-
-        Disaster d = new Disaster(type, location, severity, date, description);
-        disasters.add(d);
-        logs.add(logEntry("Disaster added: ID " + d.getId() + " by " + currentUser.getUsername()));
-        logDisasterAction(d.getId(), "Disaster created");
-        undoStack.push(() -> {
-            disasters.remove(d);
-            logs.add(logEntry("Undo: Disaster removed ID " + d.getId()));
-        });
-        redoStack.clear();
-        System.out.println("Disaster added. ID: " + d.getId());
-    }
-
-    static void viewDisasters() {
-        if (disasters.isEmpty()) {
-            System.out.println("No disasters recorded.");
-        } else {
-            disasters.forEach(System.out::println);
-        }
-    }
-
-    static void addVictim() {
-        System.out.print("Enter Name: ");
-        String name = sc.nextLine();
-        int age = getIntInput("Enter Age: ");
-        System.out.print("Enter Contact Info: ");
-        String contact = sc.nextLine();
-        System.out.print("Enter Injury Level: ");
-        String injury = sc.nextLine();
-        int did = getIntInput("Enter Disaster ID: ");
-
-        Disaster disaster = findDisasterById(did);
-        if (disaster == null) {
-            System.out.println("Disaster ID not found. Victim not added.");
-            return;
-        }
-
-        Victim v = new Victim(name, age, contact, injury, did);
-        victims.add(v);
-        logs.add(logEntry("Victim added: " + name + " to Disaster ID " + did + " by " + currentUser.getUsername()));
-        logDisasterAction(did, "Victim added: " + name);
-        undoStack.push(() -> {
-            victims.remove(v);
-            logs.add(logEntry("Undo: Victim removed ID " + v.getId()));
-        });
-        redoStack.clear();
-        System.out.println("Victim added. ID: " + v.getId());
-    }
-
-    static void assignRescueTeam() {
-        System.out.print("Enter Team Name: ");
-        String name = sc.nextLine();
-        System.out.println("Available specialties: " + Arrays.toString(TeamSpecialty.values()));
-        System.out.print("Enter Specialty: ");
-        TeamSpecialty spec = TeamSpecialty.valueOf(sc.nextLine().trim().toUpperCase());
-        int did = getIntInput("Enter Assigned Disaster ID: ");
-        System.out.print("Enter Team Status: ");
-        String status = sc.nextLine();
-
-        Disaster disaster = findDisasterById(did);
-        if (disaster == null) {
-            System.out.println("Disaster ID not found. Team not assigned.");
-            return;
-        }
-
-        RescueTeam t = new RescueTeam(name, spec, did, status);
-        teams.add(t);
-        logs.add(logEntry("Team assigned: " + name + " to Disaster ID " + did + " by " + currentUser.getUsername()));
-        logDisasterAction(did, "Team assigned: " + name);
-        undoStack.push(() -> {
-            teams.remove(t);
-            logs.add(logEntry("Undo: Team removed ID " + t.getId()));
-        });
-        redoStack.clear();
-        System.out.println("Team assigned. ID: " + t.getId());
-    }
-
-    static void viewReport() {
-        System.out.println("\n--- Disaster Report ---");
-        for (Disaster d : disasters) {
-            System.out.println(d);
-            System.out.println("Victims:");
-            for (Victim v : victims) {
-                if (v.getDisasterId() == d.getId())
-                    System.out.println("  " + v);
-            }
-            System.out.println("Teams:");
-            for (RescueTeam t : teams) {
-                if (t.getAssignedDisasterId() == d.getId())
-                    System.out.println("  " + t);
-            }
-            System.out.println("--------------------");
-        }
-    }
-
-    static void saveData() {
-        DataHandler.saveToFile("disasters.txt", disasters, Disaster::serialize);
-        DataHandler.saveToFile("victims.txt", victims, Victim::serialize);
-        DataHandler.saveToFile("teams.txt", teams, RescueTeam::serialize);
-        DataHandler.saveToFile("users.txt", users, User::serialize);
-        logs.add(logEntry("Data saved by " + currentUser.getUsername()));
-        System.out.println("Data saved.");
-    }
-
-    static void loadData() {
-        disasters = DataHandler.loadFromFile("disasters.txt", Disaster::deserialize);
-        victims = DataHandler.loadFromFile("victims.txt", Victim::deserialize);
-        teams = DataHandler.loadFromFile("teams.txt", RescueTeam::deserialize);
-        users = DataHandler.loadFromFile("users.txt", User::deserialize);
-        logs = DataHandler.loadLogs("logs.txt");
-        logs.add(logEntry("Data loaded by " + currentUser.getUsername()));
-        System.out.println("Data loaded.");
-    }
-
-    static void viewLogs() {
-        System.out.println("\n--- Disaster History/Logs ---");
-        if (logs.isEmpty()) {
-            System.out.println("No logs recorded.");
-        } else {
-            logs.forEach(System.out::println);
-        }
-    }
-
-    static void saveLogs() {
-        DataHandler.saveLogs("logs.txt", logs);
-        System.out.println("Logs saved to logs.txt");
-    }
-
-    // Edit/Delete Menu
-    static void editOrDeleteMenu() {
-        System.out.println("\n--- Edit/Delete Menu ---");
-        System.out.println("1. Edit Disaster");
-        System.out.println("2. Delete Disaster");
-        System.out.println("3. Edit Victim");
-        System.out.println("4. Delete Victim");
-        System.out.println("5. Edit Rescue Team");
-        System.out.println("6. Delete Rescue Team");
-        int ch = getIntInput("Enter your choice: ");
-        switch (ch) {
-            case 1 -> editDisaster();
-            case 2 -> deleteDisaster();
-            case 3 -> editVictim();
-            case 4 -> deleteVictim();
-            case 5 -> editRescueTeam();
-            case 6 -> deleteRescueTeam();
-            default -> System.out.println("Invalid choice!");
-        }
-    }
-
-    // Edit/Delete Disaster
-    static void editDisaster() {
-        int id = getIntInput("Enter Disaster ID to edit: ");
-        Disaster d = findDisasterById(id);
-        if (d == null) {
-            System.out.println("Disaster not found.");
-            return;
-        }
-        System.out.print("Enter new location (leave blank to keep): ");
-        String loc = sc.nextLine();
-        System.out.print("Enter new description (leave blank to keep): ");
-        String desc = sc.nextLine();
-        Disaster newD = new Disaster(
-            d.getType(),
-            loc.isEmpty() ? d.getLocation() : loc,
-            d.getSeverity(),
-            d.getDate(),
-            desc.isEmpty() ? d.getDescription() : desc
-        );
-        disasters.removeIf(x -> x.getId() == id);
-        disasters.add(newD);
-        logs.add(logEntry("Disaster edited: ID " + id + " by " + currentUser.getUsername()));
-        logDisasterAction(id, "Disaster edited");
-        System.out.println("Disaster updated.");
-    }
-
-    static void deleteDisaster() {
-        int id = getIntInput("Enter Disaster ID to delete: ");
-        boolean removed = disasters.removeIf(d -> d.getId() == id);
-        if (removed) {
-            logs.add(logEntry("Disaster deleted: ID " + id + " by " + currentUser.getUsername()));
-            logDisasterAction(id, "Disaster deleted");
-            System.out.println("Disaster deleted.");
-        } else {
-            System.out.println("Disaster not found.");
-        }
-    }
-
-    // Edit/Delete Victim
-    static void editVictim() {
-        int id = getIntInput("Enter Victim ID to edit: ");
-        Victim v = findVictimById(id);
-        if (v == null) {
-            System.out.println("Victim not found.");
-            return;
-        }
-        System.out.print("Enter new contact info (leave blank to keep): ");
-        String contact = sc.nextLine();
-        Victim newV = new Victim(
-            v.getName(),
-            v.getAge(),
-            contact.isEmpty() ? v.getContact() : contact,
-            v.getInjuryLevel(),
-            v.getDisasterId()
-        );
-        victims.removeIf(x -> x.getId() == id);
-        victims.add(newV);
-        logs.add(logEntry("Victim edited: ID " + id + " by " + currentUser.getUsername()));
-        logDisasterAction(v.getDisasterId(), "Victim edited: " + v.getName());
-        System.out.println("Victim updated.");
-    }
-
-    static void deleteVictim() {
-        int id = getIntInput("Enter Victim ID to delete: ");
-        boolean removed = victims.removeIf(v -> v.getId() == id);
-        if (removed) {
-            logs.add(logEntry("Victim deleted: ID " + id + " by " + currentUser.getUsername()));
-            System.out.println("Victim deleted.");
-        } else {
-            System.out.println("Victim not found.");
-        }
-    }
-
-    // Edit/Delete Rescue Team
-    static void editRescueTeam() {
-        int id = getIntInput("Enter Team ID to edit: ");
-        RescueTeam t = findTeamById(id);
-        if (t == null) {
-            System.out.println("Team not found.");
-            return;
-        }
-        System.out.print("Enter new status (leave blank to keep): ");
-        String status = sc.nextLine();
-        RescueTeam newT = new RescueTeam(
-            t.getTeamName(),
-            t.getSpecialty(),
-            t.getAssignedDisasterId(),
-            status.isEmpty() ? t.getStatus() : status
-        );
-        teams.removeIf(x -> x.getId() == id);
-        teams.add(newT);
-        logs.add(logEntry("Team edited: ID " + id + " by " + currentUser.getUsername()));
-        logDisasterAction(t.getAssignedDisasterId(), "Team edited: " + t.getTeamName());
-        System.out.println("Team updated.");
-    }
-
-    static void deleteRescueTeam() {
-        int id = getIntInput("Enter Team ID to delete: ");
-        boolean removed = teams.removeIf(t -> t.getId() == id);
-        if (removed) {
-            logs.add(logEntry("Team deleted: ID " + id + " by " + currentUser.getUsername()));
-            System.out.println("Team deleted.");
-        } else {
-            System.out.println("Team not found.");
-        }
-    }
-
-    // Statistics and Analytics
-    static void showStatistics() {
-        System.out.println("\n--- Statistics ---");
-        System.out.println("Total Disasters: " + disasters.size());
-        System.out.println("Total Victims: " + victims.size());
-        System.out.println("Total Rescue Teams: " + teams.size());
-
-        Map<DisasterType, Long> disasterTypeCount = new HashMap<>();
-        for (Disaster d : disasters) {
-            disasterTypeCount.put(d.getType(), disasterTypeCount.getOrDefault(d.getType(), 0L) + 1);
-        }
-        System.out.println("Disasters by Type: " + disasterTypeCount);
-
-        Map<Integer, Long> victimsPerDisaster = new HashMap<>();
-        for (Victim v : victims) {
-            victimsPerDisaster.put(v.getDisasterId(), victimsPerDisaster.getOrDefault(v.getDisasterId(), 0L) + 1);
-        }
-        System.out.println("Victims per Disaster: " + victimsPerDisaster);
-
-        Map<Integer, Long> teamsPerDisaster = new HashMap<>();
-        for (RescueTeam t : teams) {
-            teamsPerDisaster.put(t.getAssignedDisasterId(), teamsPerDisaster.getOrDefault(t.getAssignedDisasterId(), 0L) + 1);
-        }
-        System.out.println("Teams per Disaster: " + teamsPerDisaster);
-    }
-
-    // 1. Advanced Search and Filtering
-    static void searchMenu() {
-        System.out.println("\n--- Search Menu ---");
-        System.out.println("1. Search Disasters by Type");
-        System.out.println("2. Search Disasters by Location");
-        System.out.println("3. Filter Victims by Injury Level");
-        System.out.println("4. Filter Teams by Specialty");
-        int ch = getIntInput("Enter your choice: ");
-        switch (ch) {
-            case 1 -> {
-                System.out.print("Enter type: ");
-                String type = sc.nextLine().toUpperCase();
-                disasters.stream().filter(d -> d.getType().toString().equals(type)).forEach(System.out::println);
-            }
-            case 2 -> {
-                System.out.print("Enter location: ");
-                String loc = sc.nextLine();
-                disasters.stream().filter(d -> d.getLocation().equalsIgnoreCase(loc)).forEach(System.out::println);
-            }
-            case 3 -> {
-                System.out.print("Enter injury level: ");
-                String level = sc.nextLine();
-                victims.stream().filter(v -> v.getInjuryLevel().equalsIgnoreCase(level)).forEach(System.out::println);
-            }
-            case 4 -> {
-                System.out.print("Enter specialty: ");
-                String spec = sc.nextLine().toUpperCase();
-                teams.stream().filter(t -> t.getSpecialty().toString().equals(spec)).forEach(System.out::println);
-            }
-            default -> System.out.println("Invalid choice!");
-        }
-    }
-
-    // 2. Sorting
-    static void sortMenu() {
-        System.out.println("\n--- Sort Menu ---");
-        System.out.println("1. Sort Disasters by Date");
-        System.out.println("2. Sort Victims by Age");
-        int ch = getIntInput("Enter your choice: ");
-        switch (ch) {
-            case 1 -> disasters.stream()
-                .sorted(Comparator.comparing(Disaster::getDate))
-                .forEach(System.out::println);
-            case 2 -> victims.stream()
-                .sorted(Comparator.comparingInt(Victim::getAge))
-                .forEach(System.out::println);
-            default -> System.out.println("Invalid choice!");
-        }
-    }
-
-    // 3. Undo/Redo
-    static void undo() {
-        if (!undoStack.isEmpty()) {
-            Runnable action = undoStack.pop();
-            action.run();
-            redoStack.push(action);
-            System.out.println("Undo performed.");
-        } else {
-            System.out.println("Nothing to undo.");
-        }
-    }
-    static void redo() {
-        if (!redoStack.isEmpty()) {
-            Runnable action = redoStack.pop();
-            action.run();
-            undoStack.push(action);
-            System.out.println("Redo performed.");
-        } else {
-            System.out.println("Nothing to redo.");
-        }
-    }
-
-    // 4. Notifications/Alerts
-    static void showAlerts() {
-        disasters.stream()
-            .filter(d -> teams.stream().noneMatch(t -> t.getAssignedDisasterId() == d.getId()))
-            .forEach(d -> System.out.println("Alert: No team assigned for Disaster ID " + d.getId()));
-        victims.stream()
-            .filter(v -> disasters.stream().noneMatch(d -> d.getId() == v.getDisasterId()))
-            .forEach(v -> System.out.println("Alert: Victim " + v.getName() + " not assigned to any disaster!"));
-    }
-
-    // 6. Password Change
-    static void changePassword() {
-        System.out.print("Enter current password: ");
-        String oldPwd = sc.nextLine();
-        if (!currentUser.getPassword().equals(oldPwd)) {
-            System.out.println("Incorrect password.");
-            return;
-        }
-        System.out.print("Enter new password: ");
-        String newPwd = sc.nextLine();
-        for (User u : users) {
-            if (u.getUsername().equals(currentUser.getUsername())) {
-                users.remove(u);
-                users.add(new User(u.getUsername(), newPwd, u.getRole()));
-                break;
-            }
-        }
-        logs.add(logEntry("Password changed for user: " + currentUser.getUsername()));
-        System.out.println("Password changed successfully.");
-    }
-
-    // 7. Disaster Timeline (per-disaster logs)
-    static void logDisasterAction(int disasterId, String action) {
-        disasterTimelines.putIfAbsent(disasterId, new ArrayList<>());
-        disasterTimelines.get(disasterId).add(logEntry(action));
-    }
-    static void viewDisasterTimeline() {
-        int id = getIntInput("Enter Disaster ID: ");
-        List<String> timeline = disasterTimelines.get(id);
-        if (timeline == null || timeline.isEmpty()) {
-            System.out.println("No timeline for this disaster.");
-        } else {
-            timeline.forEach(System.out::println);
-        }
-    }
-
-    // 8. Data Export (CSV)
-    static void exportDisastersCSV() {
-        try (PrintWriter pw = new PrintWriter(new FileWriter("disasters_export.csv"))) {
-            pw.println("ID,Type,Location,Severity,Date,Description");
-            for (Disaster d : disasters) {
-                pw.printf("%d,%s,%s,%s,%s,%s%n", d.getId(), d.getType(), d.getLocation(), d.getSeverity(), d.getDate(), d.getDescription().replace(",", ";"));
-            }
-            System.out.println("Disasters exported to disasters_export.csv");
-        } catch (IOException e) {
-            System.out.println("Export failed: " + e.getMessage());
-        }
-    }
-
-    // Utility methods
-    static Disaster findDisasterById(int id) {
-        for (Disaster d : disasters) if (d.getId() == id) return d;
-        return null;
-    }
-    static Victim findVictimById(int id) {
-        for (Victim v : victims) if (v.getId() == id) return v;
-        return null;
-    }
-    static RescueTeam findTeamById(int id) {
-        for (RescueTeam t : teams) if (t.getId() == id) return t;
-        return null;
-    }
-    static String logEntry(String action) {
-        return "[" + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()) + "] " + action + " (User: " + (currentUser != null ? currentUser.getUsername() : "system") + ")";
-    }
-}
-
-
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+
+// Enums for better data modeling
+enum DisasterType { FLOOD, EARTHQUAKE, FIRE, CYCLONE, OTHER }
+enum Severity { LOW, MEDIUM, HIGH, CRITICAL }
+enum TeamSpecialty { MEDICAL, RESCUE, LOGISTICS, FIREFIGHTING, OTHER }
+
+// Disaster class
+class Disaster {
+    private static final java.util.concurrent.atomic.AtomicInteger idCounter = new java.util.concurrent.atomic.AtomicInteger(1);
+    private int id;
+    private DisasterType type;
+    private int location;                    // StringDictionary.SHARED code
+    private Severity severity;
+    private String date;
+    private int epochDay;                    // date parsed once; OrderedIndex.NONE when not dd-MM-yyyy
+    private String description;
+    private double latitude = Double.NaN;    // optional; NaN when unknown
+    private double longitude = Double.NaN;
+
+    public Disaster(DisasterType type, String location, Severity severity, String date, String description) {
+        this(type, location, severity, date, description, Double.NaN, Double.NaN);
+    }
+
+    public Disaster(DisasterType type, String location, Severity severity, String date, String description, double latitude, double longitude) {
+        this(idCounter.getAndIncrement(), type, location, severity, date, description, latitude, longitude);
+    }
+
+    Disaster(int id, DisasterType type, String location, Severity severity, String date, String description) {
+        this(id, type, location, severity, date, description, Double.NaN, Double.NaN);
+    }
+
+    Disaster(int id, DisasterType type, String location, Severity severity, String date, String description, double latitude, double longitude) {
+        this(id, type, StringDictionary.SHARED.code(location), severity, date, description, latitude, longitude);
+    }
+
+    Disaster(int id, DisasterType type, int location, Severity severity, String date, String description, double latitude, double longitude) {
+        this.id = id;
+        this.type = type;
+        this.location = location;
+        this.severity = severity;
+        this.date = date;
+        this.epochDay = epochDay(date);
+        this.description = description;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public int getId() { return id; }
+    public DisasterType getType() { return type; }
+    public String getLocation() { return StringDictionary.SHARED.value(location); }
+    public int getLocationCode() { return location; }
+    public Severity getSeverity() { return severity; }
+    public String getDate() { return date; }
+    public int getEpochDay() { return epochDay; }
+    public String getDescription() { return description; }
+    public double getLatitude() { return latitude; }
+    public double getLongitude() { return longitude; }
+    public boolean hasCoordinates() { return !Double.isNaN(latitude); }
+
+    @Override
+    public String toString() {
+        return "Disaster ID: " + id + ", Type: " + type + ", Location: " + getLocation() +
+               ", Severity: " + severity + ", Date: " + date + ", Description: " + description +
+               (hasCoordinates() ? ", Coordinates: " + latitude + ", " + longitude : "");
+    }
+
+    private static final EnumCodec<DisasterType> TYPES = new EnumCodec<>(DisasterType.class);
+    private static final EnumCodec<Severity> SEVERITIES = new EnumCodec<>(Severity.class);
+
+    public String serialize() {
+        RecordWriter w = RecordWriter.local();
+        write(w);
+        return w.toString();
+    }
+
+    public void write(RecordWriter w) {
+        w.field(id).field(type).field(getLocation()).field(severity).field(date).field(description);
+        if (hasCoordinates()) w.field(latitude).field(longitude);
+    }
+
+    public static Disaster deserialize(String line) {
+        return read(RecordReader.local().reset(line, 0));
+    }
+
+    public static Disaster read(RecordReader r) {
+        int id = r.nextInt();
+        DisasterType type = r.nextEnum(TYPES);
+        int location = r.nextCode(StringDictionary.SHARED, false);
+        Severity severity = r.nextEnum(SEVERITIES);
+        String date = r.nextString(false);
+        String description = r.nextString(true);
+        // Coordinates are optional trailing fields, absent from older records
+        double latitude = r.hasMore() ? r.nextDouble() : Double.NaN;
+        double longitude = r.hasMore() ? r.nextDouble() : Double.NaN;
+        return r.complete() ? new Disaster(id, type, location, severity, date, description, latitude, longitude) : null;
+    }
+
+    // Days since 1970-01-01 for a dd-MM-yyyy date, or OrderedIndex.NONE if it is not one
+    public static int epochDay(String date) {
+        if (date == null || date.length() != 10 || date.charAt(2) != '-' || date.charAt(5) != '-') return OrderedIndex.NONE;
+        int day = digits(date, 0, 2);
+        int month = digits(date, 3, 5);
+        int year = digits(date, 6, 10);
+        if (day < 0 || month < 0 || year < 0) return OrderedIndex.NONE;
+        try {
+            return (int) java.time.LocalDate.of(year, month, day).toEpochDay();
+        } catch (java.time.DateTimeException e) {
+            return OrderedIndex.NONE;
+        }
+    }
+
+    private static int digits(String s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Loaded records keep their ids; new ones must be numbered after the highest seen
+    public static void advanceIdCounter(int seenId) {
+        idCounter.accumulateAndGet(seenId + 1, Math::max);
+    }
+}
+
+// Victim class
+class Victim {
+    private static final java.util.concurrent.atomic.AtomicInteger idCounter = new java.util.concurrent.atomic.AtomicInteger(1);
+    private int id;
+    private String name;
+    private int age;
+    private String contact;
+    private int injuryLevel;                 // StringDictionary.SHARED code
+    private int disasterId;
+
+    public Victim(String name, int age, String contact, String injuryLevel, int disasterId) {
+        this(idCounter.getAndIncrement(), name, age, contact, injuryLevel, disasterId);
+    }
+
+    Victim(int id, String name, int age, String contact, String injuryLevel, int disasterId) {
+        this(id, name, age, contact, StringDictionary.SHARED.code(injuryLevel), disasterId);
+    }
+
+    Victim(int id, String name, int age, String contact, int injuryLevel, int disasterId) {
+        this.id = id;
+        this.name = name;
+        this.age = age;
+        this.contact = contact;
+        this.injuryLevel = injuryLevel;
+        this.disasterId = disasterId;
+    }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public int getAge() { return age; }
+    public String getContact() { return contact; }
+    public String getInjuryLevel() { return StringDictionary.SHARED.value(injuryLevel); }
+    public int getInjuryCode() { return injuryLevel; }
+    public int getDisasterId() { return disasterId; }
+
+    // Same victim (same id) linked to another disaster
+    public Victim withDisasterId(int did) {
+        return new Victim(id, getName(), age, getContact(), injuryLevel, did);
+    }
+
+    // Name and contact go through their getters: column store views decode them on demand
+    @Override
+    public String toString() {
+        return "Victim ID: " + id + ", Name: " + getName() + ", Age: " + age + ", Contact: " + getContact() +
+               ", Injury Level: " + getInjuryLevel() + ", Disaster ID: " + disasterId;
+    }
+
+    public String serialize() {
+        RecordWriter w = RecordWriter.local();
+        write(w);
+        return w.toString();
+    }
+
+    public void write(RecordWriter w) {
+        w.field(id).field(getName()).field(age).field(getContact()).field(getInjuryLevel()).field(disasterId);
+    }
+
+    public static Victim deserialize(String line) {
+        return read(RecordReader.local().reset(line, 0));
+    }
+
+    public static Victim read(RecordReader r) {
+        int id = r.nextInt();
+        String name = r.nextString(false);
+        int age = r.nextInt();
+        String contact = r.nextString(true);
+        int injuryLevel = r.nextCode(StringDictionary.SHARED, false);
+        int disasterId = r.nextInt();
+        return r.complete() ? new Victim(id, name, age, contact, injuryLevel, disasterId) : null;
+    }
+
+    public static void advanceIdCounter(int seenId) {
+        idCounter.accumulateAndGet(seenId + 1, Math::max);
+    }
+}
+
+// RescueTeam class
+class RescueTeam {
+    private static final java.util.concurrent.atomic.AtomicInteger idCounter = new java.util.concurrent.atomic.AtomicInteger(1);
+    private int id;
+    private int teamName;                    // StringDictionary.SHARED codes
+    private TeamSpecialty specialty;
+    private int assignedDisasterId;
+    private int status;
+    private double latitude = Double.NaN;    // optional; NaN when unknown
+    private double longitude = Double.NaN;
+
+    public RescueTeam(String teamName, TeamSpecialty specialty, int assignedDisasterId, String status) {
+        this(teamName, specialty, assignedDisasterId, status, Double.NaN, Double.NaN);
+    }
+
+    public RescueTeam(String teamName, TeamSpecialty specialty, int assignedDisasterId, String status, double latitude, double longitude) {
+        this(idCounter.getAndIncrement(), teamName, specialty, assignedDisasterId, status, latitude, longitude);
+    }
+
+    RescueTeam(int id, String teamName, TeamSpecialty specialty, int assignedDisasterId, String status) {
+        this(id, teamName, specialty, assignedDisasterId, status, Double.NaN, Double.NaN);
+    }
+
+    RescueTeam(int id, String teamName, TeamSpecialty specialty, int assignedDisasterId, String status, double latitude, double longitude) {
+        this(id, StringDictionary.SHARED.code(teamName), specialty, assignedDisasterId, StringDictionary.SHARED.code(status), latitude, longitude);
+    }
+
+    RescueTeam(int id, int teamName, TeamSpecialty specialty, int assignedDisasterId, int status, double latitude, double longitude) {
+        this.id = id;
+        this.teamName = teamName;
+        this.specialty = specialty;
+        this.assignedDisasterId = assignedDisasterId;
+        this.status = status;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public int getId() { return id; }
+    public String getTeamName() { return StringDictionary.SHARED.value(teamName); }
+    public TeamSpecialty getSpecialty() { return specialty; }
+    public int getAssignedDisasterId() { return assignedDisasterId; }
+
+    // Same team (same id) assigned to another disaster
+    public RescueTeam withDisasterId(int did) {
+        return new RescueTeam(id, getTeamName(), specialty, did, getStatus(), latitude, longitude);
+    }
+    public String getStatus() { return StringDictionary.SHARED.value(status); }
+    public int getStatusCode() { return status; }
+    public double getLatitude() { return latitude; }
+    public double getLongitude() { return longitude; }
+    public boolean hasCoordinates() { return !Double.isNaN(latitude); }
+
+    @Override
+    public String toString() {
+        return "Team ID: " + id + ", Team: " + getTeamName() + ", Specialty: " + specialty +
+               ", Assigned to Disaster ID: " + assignedDisasterId + ", Status: " + getStatus() +
+               (hasCoordinates() ? ", Coordinates: " + latitude + ", " + longitude : "");
+    }
+
+    private static final EnumCodec<TeamSpecialty> SPECIALTIES = new EnumCodec<>(TeamSpecialty.class);
+
+    public String serialize() {
+        RecordWriter w = RecordWriter.local();
+        write(w);
+        return w.toString();
+    }
+
+    public void write(RecordWriter w) {
+        w.field(id).field(getTeamName()).field(specialty).field(assignedDisasterId).field(getStatus());
+        if (hasCoordinates()) w.field(latitude).field(longitude);
+    }
+
+    public static RescueTeam deserialize(String line) {
+        return read(RecordReader.local().reset(line, 0));
+    }
+
+    public static RescueTeam read(RecordReader r) {
+        int id = r.nextInt();
+        int teamName = r.nextCode(StringDictionary.SHARED, false);
+        TeamSpecialty specialty = r.nextEnum(SPECIALTIES);
+        int assignedDisasterId = r.nextInt();
+        int status = r.nextCode(StringDictionary.SHARED, true);
+        double latitude = r.hasMore() ? r.nextDouble() : Double.NaN;
+        double longitude = r.hasMore() ? r.nextDouble() : Double.NaN;
+        return r.complete() ? new RescueTeam(id, teamName, specialty, assignedDisasterId, status, latitude, longitude) : null;
+    }
+
+    public static void advanceIdCounter(int seenId) {
+        idCounter.accumulateAndGet(seenId + 1, Math::max);
+    }
+}
+
+// Record codec for the comma-separated data files.
+// Fields are separated by ',' and a backslash escapes ',', ';', '\\' and line breaks inside a field.
+// Older files wrote commas in free-text fields as ';', so a bare ';' in those fields still reads as ','.
+class RecordReader {
+    private static final ThreadLocal<RecordReader> LOCAL = ThreadLocal.withInitial(RecordReader::new);
+
+    private char[] buf = new char[256];
+    private int pos;
+    private int end;
+    private boolean missing;   // a field was requested past the end of the record
+    private final StringBuilder scratch = new StringBuilder();
+
+    public static RecordReader local() { return LOCAL.get(); }
+
+    // Reads from line starting at offset, copying it into this reader's reusable buffer
+    public RecordReader reset(String line, int offset) {
+        int len = line.length() - offset;
+        if (buf.length < len) buf = new char[Math.max(len, buf.length * 2)];
+        line.getChars(offset, line.length(), buf, 0);
+        return reset(buf, 0, len);
+    }
+
+    // Reads in place from buf[off, off + len) without copying
+    public RecordReader reset(char[] buf, int off, int len) {
+        this.buf = buf;
+        this.pos = off;
+        this.end = off + len;
+        this.missing = false;
+        return this;
+    }
+
+    // True if every field read so far was present
+    public boolean complete() { return !missing; }
+
+    public boolean hasMore() { return !missing && pos <= end; }
+
+    private boolean startField() {
+        if (pos > end) {
+            missing = true;
+            return false;
+        }
+        return true;
+    }
+
+    public int nextInt() {
+        if (!startField()) return 0;
+        int i = pos;
+        boolean negative = i < end && buf[i] == '-';
+        if (negative) i++;
+        int start = i;
+        long value = 0;
+        while (i < end && buf[i] != ',') {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9 || (value = value * 10 + digit) > Integer.MAX_VALUE + 1L) throw badInt();
+            i++;
+        }
+        if (i == start || (!negative && value > Integer.MAX_VALUE)) throw badInt();
+        pos = i + 1;
+        return (int) (negative ? -value : value);
+    }
+
+    private NumberFormatException badInt() {
+        return new NumberFormatException("For input string: \"" + new String(buf, pos, fieldEnd(pos) - pos) + "\"");
+    }
+
+    private int fieldEnd(int from) {
+        while (from < end && buf[from] != ',') from++;
+        return from;
+    }
+
+    public double nextDouble() {
+        if (!startField()) return Double.NaN;
+        int stop = fieldEnd(pos);
+        double value = Double.parseDouble(new String(buf, pos, stop - pos));
+        pos = stop + 1;
+        return value;
+    }
+
+    public <E extends Enum<E>> E nextEnum(EnumCodec<E> codec) {
+        if (!startField()) return null;
+        int stop = fieldEnd(pos);
+        E value = codec.lookup(buf, pos, stop - pos);
+        pos = stop + 1;
+        return value;
+    }
+
+    // A string field as its dictionary code; unescaped values are looked up without making a String
+    public int nextCode(StringDictionary dictionary, boolean legacySemicolons) {
+        if (!startField()) return dictionary.code("");
+        int i = pos;
+        while (i < end) {
+            char c = buf[i];
+            if (c == ',' || c == '\\' || (c == ';' && legacySemicolons)) break;
+            i++;
+        }
+        if (i == end || buf[i] == ',') {
+            int code = dictionary.code(buf, pos, i - pos);
+            pos = i + 1;
+            return code;
+        }
+        return dictionary.code(nextString(legacySemicolons));
+    }
+
+    // legacySemicolons: the field was written by the old format, which stored ',' as ';'
+    public String nextString(boolean legacySemicolons) {
+        if (!startField()) return null;
+        int i = pos;
+        while (i < end) {
+            char c = buf[i];
+            if (c == ',' || c == '\\' || (c == ';' && legacySemicolons)) break;
+            i++;
+        }
+        if (i == end || buf[i] == ',') {
+            // Fast path: nothing to unescape
+            String value = new String(buf, pos, i - pos);
+            pos = i + 1;
+            return value;
+        }
+        scratch.setLength(0);
+        scratch.append(buf, pos, i - pos);
+        while (i < end) {
+            char c = buf[i];
+            if (c == ',') break;
+            if (c == '\\' && i + 1 < end) {
+                char e = buf[++i];
+                scratch.append(e == 'n' ? '\n' : e == 'r' ? '\r' : e);
+            } else if (c == ';' && legacySemicolons) {
+                scratch.append(',');
+            } else {
+                scratch.append(c);
+            }
+            i++;
+        }
+        pos = i + 1;
+        return scratch.toString();
+    }
+}
+
+class RecordWriter {
+    private static final ThreadLocal<RecordWriter> LOCAL = ThreadLocal.withInitial(RecordWriter::new);
+
+    private final StringBuilder sb = new StringBuilder(128);
+
+    // Thread-local writer, emptied and ready for a new record
+    public static RecordWriter local() {
+        RecordWriter w = LOCAL.get();
+        w.sb.setLength(0);
+        return w;
+    }
+
+    private void separator() {
+        if (sb.length() > 0) sb.append(',');
+    }
+
+    public RecordWriter field(int value) {
+        separator();
+        sb.append(value);
+        return this;
+    }
+
+    public RecordWriter field(double value) {
+        separator();
+        sb.append(value);
+        return this;
+    }
+
+    public RecordWriter field(Enum<?> value) {
+        separator();
+        sb.append(value.name());
+        return this;
+    }
+
+    public RecordWriter field(String value) {
+        separator();
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case ',', ';', '\\' -> sb.append('\\').append(c);
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                default -> sb.append(c);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() { return sb.toString(); }
+}
+
+// Maps enum constant names to constants without creating a String for the name
+class EnumCodec<E extends Enum<E>> {
+    private final Class<E> type;
+    private final E[] constants;
+    private final char[][] names;
+
+    public EnumCodec(Class<E> type) {
+        this.type = type;
+        this.constants = type.getEnumConstants();
+        this.names = new char[constants.length][];
+        for (int i = 0; i < constants.length; i++) names[i] = constants[i].name().toCharArray();
+    }
+
+    public E lookup(char[] buf, int off, int len) {
+        for (int i = 0; i < names.length; i++) {
+            char[] name = names[i];
+            if (name.length == len && Arrays.equals(name, 0, len, buf, off, off + len)) return constants[i];
+        }
+        throw new IllegalArgumentException("No enum constant " + type.getCanonicalName() + "." + new String(buf, off, len));
+    }
+}
+
+// Shared dictionary for low-cardinality strings (locations, injury levels, team names and statuses):
+// each distinct value is stored once and records keep its int code. Every code also has a folded code,
+// the code of its trimmed lower-case form, so case-insensitive filters compare ints. Codes are never
+// reclaimed. Lookups are lock-free; new codes are assigned under the dictionary's lock. A second,
+// open-addressing table lets parsers look up a value straight from their char buffer, so loading a
+// record whose value is already known allocates no String.
+class StringDictionary {
+    static final StringDictionary SHARED = new StringDictionary();
+
+    private final java.util.concurrent.ConcurrentHashMap<String, Integer> codes = new java.util.concurrent.ConcurrentHashMap<>();
+    private volatile String[] values = new String[64];
+    private volatile int[] folded = new int[64];
+    private volatile java.util.concurrent.atomic.AtomicIntegerArray table = new java.util.concurrent.atomic.AtomicIntegerArray(128);   // code + 1, 0 = empty
+    private int size;
+
+    public int code(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    // Code of the value in buf[off, off + len)
+    public int code(char[] buf, int off, int len) {
+        java.util.concurrent.atomic.AtomicIntegerArray t = table;
+        String[] v = values;
+        int mask = t.length() - 1;
+        for (int i = slot(hash(buf, off, len), mask); ; i = (i + 1) & mask) {
+            int entry = t.get(i);
+            if (entry == 0) break;
+            String s = entry - 1 < v.length ? v[entry - 1] : null;
+            if (s != null && s.length() == len && matches(s, buf, off)) return entry - 1;
+        }
+        return code(new String(buf, off, len));
+    }
+
+    private static int hash(char[] buf, int off, int len) {
+        int h = 0;
+        for (int i = off; i < off + len; i++) h = 31 * h + buf[i];
+        return h;   // equals String.hashCode()
+    }
+
+    private static int slot(int hash, int mask) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static boolean matches(String s, char[] buf, int off) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) != buf[off + i]) return false;
+        }
+        return true;
+    }
+
+    private void index(java.util.concurrent.atomic.AtomicIntegerArray t, String value, int code) {
+        int mask = t.length() - 1;
+        int i = slot(value.hashCode(), mask);
+        while (t.get(i) != 0) i = (i + 1) & mask;
+        t.set(i, code + 1);
+    }
+
+    private synchronized int add(String value) {
+        Integer code = codes.get(value);
+        if (code != null) return code;
+        String fold = fold(value);
+        int foldCode = fold.equals(value) ? size : code(fold);
+        int c = size++;
+        if (c == values.length) {
+            folded = Arrays.copyOf(folded, c * 2);
+            values = Arrays.copyOf(values, c * 2);
+        }
+        values[c] = value;
+        folded[c] = foldCode;
+        if (2 * size > table.length()) {
+            java.util.concurrent.atomic.AtomicIntegerArray grown = new java.util.concurrent.atomic.AtomicIntegerArray(table.length() * 2);
+            for (int i = 0; i < size; i++) index(grown, values[i], i);
+            table = grown;
+        } else {
+            index(table, value, c);
+        }
+        codes.put(value, c);   // published last: a code is only handed out once its slots are filled
+        return c;
+    }
+
+    public String value(int code) { return values[code]; }
+
+    // The canonical instance of value
+    public String intern(String value) { return values[code(value)]; }
+
+    public int folded(int code) { return folded[code]; }
+
+    // Folded code a query matches, or -1 if no stored value folds to it (without adding the query)
+    public int find(String query) {
+        Integer code = codes.get(fold(query));
+        return code == null ? -1 : folded[code];
+    }
+
+    public synchronized int size() { return size; }
+
+    static String fold(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
+
+// DataHandler class
+class DataHandler {
+    public static <T> void saveToFile(String filename, Iterable<T> data, java.util.function.Function<T, String> serializer) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
+            for (T obj : data) {
+                writer.write(serializer.apply(obj));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            System.out.println("Error saving file: " + e.getMessage());
+        }
+    }
+
+    // Loader mode: "sequential", "mmap", or "auto" (mmap once a file reaches dm.loader.parallelBytes)
+    static final String LOADER = System.getProperty("dm.loader", "auto");
+    static final long PARALLEL_BYTES = Long.getLong("dm.loader.parallelBytes", 64L << 20);
+    static final int CHUNK_BYTES = Integer.getInteger("dm.loader.chunkBytes", 8 << 20);
+
+    // A missing file loads as empty. A file that cannot be read or holds a malformed record throws, since
+    // carrying on with nothing loaded would let the next save or compaction overwrite the real data.
+    public static <T> List<T> loadFromFile(String filename, java.util.function.Function<RecordReader, T> deserializer) {
+        File file = new File(filename);
+        if (!file.exists()) return new ArrayList<>();
+        try {
+            if (LOADER.equals("mmap") || (LOADER.equals("auto") && file.length() >= PARALLEL_BYTES)) {
+                return loadMapped(filename, deserializer);
+            }
+            return loadSequential(filename, deserializer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error loading " + filename, e);
+        } catch (UncheckedIOException e) {
+            throw new UncheckedIOException("Error loading " + filename, e.getCause());
+        } catch (RuntimeException e) {
+            throw new UncheckedIOException("Error loading " + filename, new IOException(e.getMessage(), e));
+        }
+    }
+
+    static <T> List<T> loadSequential(String filename, java.util.function.Function<RecordReader, T> deserializer) throws IOException {
+        List<T> data = new ArrayList<>();
+        try (Reader in = new FileReader(filename)) {
+            RecordReader reader = new RecordReader();
+            char[] buf = new char[1 << 16];
+            int filled = 0;
+            int n;
+            while ((n = in.read(buf, filled, buf.length - filled)) > 0 || filled > 0) {
+                if (n > 0) filled += n;
+                int consumed = parseLines(buf, 0, filled, n <= 0, reader, deserializer, data);
+                System.arraycopy(buf, consumed, buf, 0, filled - consumed);
+                filled -= consumed;
+                if (n <= 0) break;
+                if (filled == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+        }
+        return data;
+    }
+
+    // Deserializes every complete line in buf[off, end) in place; a trailing partial line is left
+    // unconsumed unless atEof. Returns the index just past the last consumed character.
+    static <T> int parseLines(char[] buf, int off, int end, boolean atEof, RecordReader reader,
+                              java.util.function.Function<RecordReader, T> deserializer, List<T> out) {
+        int lineStart = off;
+        for (int i = off; i < end || (atEof && i == end && lineStart < end); i++) {
+            if (i < end && buf[i] != '\n') continue;
+            int lineEnd = i;
+            if (lineEnd > lineStart && buf[lineEnd - 1] == '\r') lineEnd--;
+            if (lineEnd > lineStart) {
+                T obj = deserializer.apply(reader.reset(buf, lineStart, lineEnd - lineStart));
+                if (obj != null) out.add(obj);
+            }
+            lineStart = Math.min(i + 1, end);
+        }
+        return lineStart;
+    }
+
+    // Memory-maps the file, cuts it into chunks on newline boundaries and deserializes the chunks in
+    // parallel on the common fork-join pool. Chunk results are concatenated in file order. Deserializers
+    // must not touch shared state; callers fix up id counters once the whole file is in.
+    public static <T> List<T> loadMapped(String filename, java.util.function.Function<RecordReader, T> deserializer) throws IOException {
+        try (FileChannel channel = FileChannel.open(java.nio.file.Paths.get(filename))) {
+            long size = channel.size();
+            List<long[]> chunks = new ArrayList<>();
+            long start = 0;
+            while (start < size) {
+                long end = Math.min(size, start + CHUNK_BYTES);
+                // Extend to just past the next newline so no line is split across chunks, however long it is
+                while (end < size) {
+                    java.nio.MappedByteBuffer probe = channel.map(FileChannel.MapMode.READ_ONLY, end, Math.min(size - end, 1 << 16));
+                    int i = 0;
+                    while (i < probe.limit() && probe.get(i) != '\n') i++;
+                    end += i;
+                    if (i < probe.limit()) {
+                        end++;
+                        break;
+                    }
+                }
+                chunks.add(new long[] { start, end });
+                start = end;
+            }
+            List<List<T>> parts = chunks.parallelStream()
+                .map(c -> parseChunk(channel, c[0], c[1], deserializer))
+                .toList();
+            int total = 0;
+            for (List<T> part : parts) total += part.size();
+            List<T> data = new ArrayList<>(total);
+            for (List<T> part : parts) data.addAll(part);
+            return data;
+        }
+    }
+
+    private static <T> List<T> parseChunk(FileChannel channel, long start, long end, java.util.function.Function<RecordReader, T> deserializer) {
+        java.nio.CharBuffer chars;
+        try {
+            chars = java.nio.charset.Charset.defaultCharset().newDecoder()
+                .decode(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<T> data = new ArrayList<>();
+        parseLines(chars.array(), chars.arrayOffset(), chars.arrayOffset() + chars.limit(), true, new RecordReader(), deserializer, data);
+        return data;
+    }
+
+    // Writes to a temp file and renames it over the target, so readers never see a half-written snapshot
+    public static <T> void writeSnapshot(String filename, Iterable<T> data, java.util.function.Function<T, String> serializer) throws IOException {
+        java.nio.file.Path target = java.nio.file.Paths.get(filename);
+        java.nio.file.Path tmp = java.nio.file.Paths.get(filename + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp.toFile());
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out), 1 << 16)) {
+            for (T obj : data) {
+                writer.write(serializer.apply(obj));
+                writer.newLine();
+            }
+            writer.flush();
+            out.getChannel().force(true);
+        }
+        java.nio.file.Files.move(tmp, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
+
+// RFC 4180 CSV: fields separated by ',', optionally wrapped in '"' with "" standing for a literal quote.
+// A quoted field may contain commas and line breaks, so a record can span several lines.
+class Csv {
+    // Next whole record (lines joined with '\n' while a quote is open), or null at end of input
+    static String readRecord(BufferedReader in, int[] lineNo) throws IOException {
+        String line = in.readLine();
+        if (line == null) return null;
+        lineNo[0]++;
+        if (!openQuote(line, false)) return line;
+        StringBuilder record = new StringBuilder(line);
+        boolean open = true;
+        while (open && (line = in.readLine()) != null) {
+            lineNo[0]++;
+            record.append('\n').append(line);
+            open = openQuote(line, true);
+        }
+        return record.toString();
+    }
+
+    // Whether a quote is still open at the end of line, given the state at its start
+    private static boolean openQuote(String line, boolean open) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') open = !open;
+        }
+        return open;
+    }
+
+    static List<String> split(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // Appends value, quoted if it contains a comma, quote or line break
+    static void quote(String value, StringBuilder out) {
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') out.append('"');
+            out.append(c);
+        }
+        out.append('"');
+    }
+}
+
+// Writes CSV through a direct ByteBuffer on a FileChannel, optionally gzip-compressed and split into part
+// files once a part holds partBytes of CSV text. Each row is encoded straight into the buffer, so memory
+// use stays the same however much is exported.
+class CsvExporter implements Closeable {
+    static final int BUFFER_BYTES = Integer.getInteger("dm.export.bufferBytes", 1 << 20);
+
+    private final String base;
+    private final String header;
+    private final boolean gzip;
+    private final long partBytes;   // 0 writes a single file
+    private final java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final java.nio.ByteBuffer deflated;
+    private final java.nio.charset.CharsetEncoder utf8 = java.nio.charset.StandardCharsets.UTF_8.newEncoder();
+    private final java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+    private final StringBuilder row = new StringBuilder(256);
+    private final List<String> files = new ArrayList<>();
+    private FileChannel channel;
+    private java.util.zip.Deflater deflater;
+    private long partDrained;   // CSV bytes of the current part already handed to the channel or deflater
+    private boolean firstField = true;
+    private long rows;
+
+    CsvExporter(String base, String header, boolean gzip, long partBytes) {
+        this.base = base;
+        this.header = header;
+        this.gzip = gzip;
+        this.partBytes = partBytes;
+        this.deflated = gzip ? java.nio.ByteBuffer.allocateDirect(BUFFER_BYTES) : null;
+    }
+
+    public CsvExporter field(String value) {
+        if (!firstField) row.append(',');
+        firstField = false;
+        Csv.quote(value, row);
+        return this;
+    }
+
+    public CsvExporter field(int value) {
+        if (!firstField) row.append(',');
+        firstField = false;
+        row.append(value);
+        return this;
+    }
+
+    public CsvExporter field(Enum<?> value) {
+        return field(value.name());
+    }
+
+    public void endRow() throws IOException {
+        if (channel == null || (partBytes > 0 && partDrained + buf.position() >= partBytes)) {
+            if (channel != null) finishPart();
+            openPart();
+        }
+        row.append("\r\n");
+        encode();
+        rows++;
+    }
+
+    public long rows() { return rows; }
+    public List<String> files() { return files; }
+
+    private void openPart() throws IOException {
+        String name = partBytes > 0 ? String.format("%s.part-%03d.csv", base, files.size() + 1) : base + ".csv";
+        if (gzip) name += ".gz";
+        channel = FileChannel.open(java.nio.file.Paths.get(name), java.nio.file.StandardOpenOption.CREATE,
+            java.nio.file.StandardOpenOption.TRUNCATE_EXISTING, java.nio.file.StandardOpenOption.WRITE);
+        files.add(name);
+        partDrained = 0;
+        if (gzip) {
+            // Fixed gzip member header: deflate, no flags, no mtime, unknown OS
+            deflated.put(new byte[] {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 255});
+            deflater = new java.util.zip.Deflater(java.util.zip.Deflater.DEFAULT_COMPRESSION, true);
+            crc.reset();
+        }
+        StringBuilder pending = new StringBuilder(row);
+        row.setLength(0);
+        row.append(header).append("\r\n");
+        encode();
+        row.append(pending);
+    }
+
+    // Encodes row into the buffer, draining it as often as needed, and clears row for the next one
+    private void encode() throws IOException {
+        java.nio.CharBuffer chars = java.nio.CharBuffer.wrap(row);
+        while (utf8.encode(chars, buf, true).isOverflow()) drain();
+        utf8.reset();
+        row.setLength(0);
+        firstField = true;
+    }
+
+    private void drain() throws IOException {
+        buf.flip();
+        partDrained += buf.remaining();
+        if (gzip) {
+            crc.update(buf.duplicate());
+            deflater.setInput(buf.slice());   // a slice, so clearing buf below cannot hand the deflater stale input
+            while (!deflater.needsInput()) {
+                deflater.deflate(deflated);
+                writeDeflated();
+            }
+        } else {
+            while (buf.hasRemaining()) channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    private void writeDeflated() throws IOException {
+        deflated.flip();
+        while (deflated.hasRemaining()) channel.write(deflated);
+        deflated.clear();
+    }
+
+    private void finishPart() throws IOException {
+        drain();
+        if (gzip) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflater.deflate(deflated);
+                writeDeflated();
+            }
+            // Trailer: CRC32 and uncompressed size, little-endian
+            deflated.order(java.nio.ByteOrder.LITTLE_ENDIAN).putInt((int) crc.getValue()).putInt((int) deflater.getBytesRead());
+            writeDeflated();
+            deflater.end();
+        }
+        channel.force(false);
+        channel.close();
+        channel = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null && files.isEmpty()) openPart();   // header-only file for an empty export
+        if (channel != null) finishPart();
+    }
+}
+
+// Streams victims or teams from a CSV file into the repositories. The calling thread only cuts the file
+// into batches of records; a worker pool parses, validates and inserts them, with one journal commit and
+// one audit entry per batch. The pool's queue is bounded and a full queue makes the reader process the
+// batch itself, so a large file never piles up in memory. Rejected rows go to <file>.rejects.
+class CsvImporter {
+    static final int BATCH_ROWS = Integer.getInteger("dm.import.batchRows", 10_000);
+    static final int QUEUED_BATCHES = Integer.getInteger("dm.import.queuedBatches", 4);
+
+    enum Kind {
+        VICTIMS("Name,Age,Contact,InjuryLevel,DisasterId"),
+        TEAMS("TeamName,Specialty,DisasterId,Status");
+
+        final String header;
+        final int columns;
+
+        Kind(String header) {
+            this.header = header;
+            this.columns = header.split(",").length;
+        }
+    }
+
+    record Result(long rows, long imported, long rejected, long millis) {}
+
+    private record Row(int line, String text) {}
+
+    private final Kind kind;
+    private final String filename;
+    private final String actor;
+    private final java.util.concurrent.atomic.AtomicLong imported = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong rejected = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicInteger batches = new java.util.concurrent.atomic.AtomicInteger();
+    private Writer rejects;
+
+    CsvImporter(Kind kind, String filename, String actor) {
+        this.kind = kind;
+        this.filename = filename;
+        this.actor = actor;
+    }
+
+    public Result run() throws IOException {
+        long start = System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        java.util.concurrent.ThreadPoolExecutor pool = new java.util.concurrent.ThreadPoolExecutor(
+            threads, threads, 0, java.util.concurrent.TimeUnit.MILLISECONDS,
+            new java.util.concurrent.ArrayBlockingQueue<>(QUEUED_BATCHES),
+            r -> {
+                Thread t = new Thread(r, "csv-import");
+                t.setDaemon(true);
+                return t;
+            },
+            new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
+        List<java.util.concurrent.Future<?>> pending = new ArrayList<>();
+        long rows = 0;
+        try (BufferedReader in = new BufferedReader(new FileReader(filename), 1 << 16)) {
+            int[] lineNo = {0};
+            List<Row> batch = new ArrayList<>(BATCH_ROWS);
+            String record;
+            while ((record = Csv.readRecord(in, lineNo)) != null) {
+                if (record.isBlank()) continue;
+                if (rows == 0 && batch.isEmpty() && isHeader(record)) continue;
+                batch.add(new Row(lineNo[0], record));
+                rows++;
+                if (batch.size() == BATCH_ROWS) {
+                    List<Row> full = batch;
+                    pending.add(pool.submit(() -> process(full)));
+                    batch = new ArrayList<>(BATCH_ROWS);
+                }
+            }
+            if (!batch.isEmpty()) {
+                List<Row> last = batch;
+                pending.add(pool.submit(() -> process(last)));
+            }
+            for (java.util.concurrent.Future<?> f : pending) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("import interrupted");
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw new IOException("import failed: " + e.getCause(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+            synchronized (this) {
+                if (rejects != null) rejects.close();
+            }
+        }
+        return new Result(rows, imported.get(), rejected.get(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private boolean isHeader(String record) {
+        List<String> fields = Csv.split(record);
+        return fields.get(0).trim().equalsIgnoreCase(kind.header.substring(0, kind.header.indexOf(',')));
+    }
+
+    private void process(List<Row> batch) {
+        int ok = 0;
+        IntIntMap perDisaster = new IntIntMap(16);
+        for (Row row : batch) {
+            String error;
+            try {
+                List<String> fields = Csv.split(row.text());
+                if (fields.size() != kind.columns) {
+                    error = "expected " + kind.columns + " fields, found " + fields.size();
+                } else {
+                    int did = Integer.parseInt(fields.get(kind == Kind.VICTIMS ? 4 : 2).trim());
+                    error = kind == Kind.VICTIMS ? insertVictim(fields, did) : insertTeam(fields, did);
+                    if (error == null) {
+                        ok++;
+                        perDisaster.increment(did, 1);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+            }
+            if (error != null) reject(row, error);
+        }
+        App.journal.commit();
+        imported.addAndGet(ok);
+        String what = kind == Kind.VICTIMS ? "Victims imported: " : "Teams imported: ";
+        long now = System.currentTimeMillis();
+        perDisaster.forEach((did, n) -> App.timelines.append(did, AuditLog.format(now, actor, what + n)));
+        App.audit.log(actor, "Bulk import batch " + batches.incrementAndGet() + " from " + filename + ": "
+            + ok + " " + kind.name().toLowerCase() + " imported, " + (batch.size() - ok) + " rejected");
+    }
+
+    // Null on success, otherwise why the row was rejected
+    private static String insertVictim(List<String> f, int did) {
+        String name = f.get(0).trim();
+        if (name.isEmpty()) return "empty name";
+        int age = Integer.parseInt(f.get(1).trim());
+        if (age < 0 || age > 150) return "age out of range: " + age;
+        String injury = f.get(3).trim();
+        if (injury.isEmpty()) return "empty injury level";
+        // Checked under the stripe before the victim is built, so a rejected row does not use up an id
+        boolean added = App.striped(did, () -> {
+            if (!App.disasters.contains(did)) return false;
+            App.victims.put(new Victim(name, age, f.get(2).trim(), injury, did));
+            return true;
+        });
+        return added ? null : "disaster " + did + " not found";
+    }
+
+    private static String insertTeam(List<String> f, int did) {
+        String name = f.get(0).trim();
+        if (name.isEmpty()) return "empty team name";
+        TeamSpecialty spec;
+        try {
+            spec = TeamSpecialty.valueOf(f.get(1).trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return "unknown specialty: " + f.get(1).trim();
+        }
+        boolean added = App.striped(did, () -> {
+            if (!App.disasters.contains(did)) return false;
+            App.teams.put(new RescueTeam(name, spec, did, f.get(3).trim()));
+            return true;
+        });
+        return added ? null : "disaster " + did + " not found";
+    }
+
+    private synchronized void reject(Row row, String error) {
+        rejected.incrementAndGet();
+        try {
+            if (rejects == null) rejects = new BufferedWriter(new FileWriter(filename + ".rejects"));
+            rejects.write("line " + row.line() + ": " + error + ": " + row.text().replace("\n", "\\n"));
+            rejects.write(System.lineSeparator());
+        } catch (IOException e) {
+            System.out.println("Error writing rejects: " + e.getMessage());
+        }
+    }
+}
+
+// Growable append-only long array
+class LongList {
+    private long[] values = new long[16];
+    private int size;
+
+    public void add(long v) {
+        if (size == values.length) values = Arrays.copyOf(values, size * 2);
+        values[size++] = v;
+    }
+
+    public long get(int i) { return values[i]; }
+    public int size() { return size; }
+
+    public LongList copy() {
+        LongList c = new LongList();
+        c.values = Arrays.copyOf(values, Math.max(size, 1));
+        c.size = size;
+        return c;
+    }
+}
+
+// One log file plus its index: a sparse (timestamp, byte offset) entry every SPARSE_EVERY lines and a
+// posting list of line offsets per user. Closed segments keep only their time range and user set in
+// memory and read the rest of the index from the .idx sidecar when a query needs it.
+class LogSegment {
+    static final int SPARSE_EVERY = 128;
+    private static final int IDX_MAGIC = 0x444D4C49; // "DMLI"
+
+    final long baseMillis;
+    final File dir;
+    volatile File file;
+    long minTs = Long.MAX_VALUE;
+    long maxTs = Long.MIN_VALUE;
+    long bytes;
+    int lines;
+    Set<String> users = new HashSet<>();
+    LongList sparseTs = new LongList();
+    LongList sparseOffsets = new LongList();
+    Map<String, LongList> postings = new HashMap<>();
+    private int pins;
+    private File retired;   // plain file replaced by its .gz while pinned, deleted by the last unpin
+
+    LogSegment(File dir, long baseMillis, File file) {
+        this.dir = dir;
+        this.baseMillis = baseMillis;
+        this.file = file;
+    }
+
+    String baseName() { return "segment-" + baseMillis; }
+    File indexFile() { return new File(dir, baseName() + ".idx"); }
+    boolean compressed() { return file.getName().endsWith(".gz"); }
+
+    void index(long ts, String user, long offset, int length) {
+        if (lines % SPARSE_EVERY == 0) {
+            sparseTs.add(ts);
+            sparseOffsets.add(offset);
+        }
+        if (ts < minTs) minTs = ts;
+        if (ts > maxTs) maxTs = ts;
+        if (users.add(user)) postings.put(user, new LongList());
+        postings.get(user).add(offset);
+        lines++;
+        bytes = offset + length;
+    }
+
+    boolean overlaps(long from, long to) {
+        return lines > 0 && minTs <= to && maxTs >= from;
+    }
+
+    // The last sparse entry strictly before from, so no line at or after from is skipped
+    int startEntry(long from) {
+        int lo = 0, hi = sparseTs.size() - 1, best = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sparseTs.get(mid) < from) {
+                best = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return best;
+    }
+
+    long sparseOffset(int entry) { return sparseTs.size() == 0 ? 0 : sparseOffsets.get(entry); }
+    long sparseMillis(int entry) { return sparseTs.size() == 0 ? baseMillis : sparseTs.get(entry); }
+
+    void writeIndex() throws IOException {
+        File tmp = new File(dir, baseName() + ".idx.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(IDX_MAGIC);
+            out.writeLong(minTs);
+            out.writeLong(maxTs);
+            out.writeInt(lines);
+            out.writeLong(bytes);
+            out.writeInt(sparseTs.size());
+            for (int i = 0; i < sparseTs.size(); i++) {
+                out.writeLong(sparseTs.get(i));
+                out.writeLong(sparseOffsets.get(i));
+            }
+            out.writeInt(postings.size());
+            for (Map.Entry<String, LongList> e : postings.entrySet()) {
+                out.writeUTF(e.getKey());
+                LongList offsets = e.getValue();
+                out.writeInt(offsets.size());
+                for (int i = 0; i < offsets.size(); i++) out.writeLong(offsets.get(i));
+            }
+        }
+        java.nio.file.Files.move(tmp.toPath(), indexFile().toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Loads the sidecar index; with summaryOnly the sparse index and postings are not kept
+    void readIndex(boolean summaryOnly) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile())))) {
+            if (in.readInt() != IDX_MAGIC) throw new IOException(indexFile() + " is not a log index");
+            minTs = in.readLong();
+            maxTs = in.readLong();
+            lines = in.readInt();
+            bytes = in.readLong();
+            LongList ts = new LongList(), offs = new LongList();
+            for (int i = in.readInt(); i > 0; i--) {
+                ts.add(in.readLong());
+                offs.add(in.readLong());
+            }
+            Set<String> names = new HashSet<>();
+            Map<String, LongList> lists = new HashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                String user = in.readUTF();
+                names.add(user);
+                int n = in.readInt();
+                if (summaryOnly) {
+                    in.skipBytes(n * 8);
+                    continue;
+                }
+                LongList offsets = new LongList();
+                for (int j = 0; j < n; j++) offsets.add(in.readLong());
+                lists.put(user, offsets);
+            }
+            users = names;
+            sparseTs = summaryOnly ? null : ts;
+            sparseOffsets = summaryOnly ? null : offs;
+            postings = summaryOnly ? null : lists;
+        }
+    }
+
+    // A closed segment's full index, read from disk; the active segment answers from memory
+    LogSegment loadIndex(File pinned) throws IOException {
+        LogSegment copy = new LogSegment(dir, baseMillis, pinned);
+        copy.readIndex(false);
+        return copy;
+    }
+
+    // Queries pin the segment while they read it, so compression cannot delete the file underneath them
+    synchronized File pin() {
+        pins++;
+        return file;
+    }
+
+    synchronized void unpin() {
+        if (--pins == 0 && retired != null) {
+            retired.delete();
+            retired = null;
+        }
+    }
+
+    // Switches to the compressed file; the plain one is deleted now or once the last reader unpins
+    synchronized void replaceFile(File compressed) {
+        File plain = file;
+        file = compressed;
+        if (pins == 0) plain.delete();
+        else retired = plain;
+    }
+}
+
+// Reads lines at increasing byte offsets from a plain or gzip-compressed segment
+class LineCursor implements Closeable {
+    private final InputStream in;
+    private long pos;
+    private byte[] line = new byte[256];
+
+    LineCursor(File file, long start) throws IOException {
+        if (file.getName().endsWith(".gz")) {
+            in = new BufferedInputStream(new java.util.zip.GZIPInputStream(new FileInputStream(file), 1 << 16), 1 << 16);
+        } else {
+            FileInputStream raw = new FileInputStream(file);
+            raw.getChannel().position(start);
+            pos = start;
+            in = new BufferedInputStream(raw, 1 << 16);
+        }
+        skipTo(start);
+    }
+
+    private void skipTo(long offset) throws IOException {
+        while (pos < offset) {
+            long n = in.skip(offset - pos);
+            if (n <= 0) {
+                if (in.read() < 0) throw new EOFException();
+                n = 1;
+            }
+            pos += n;
+        }
+    }
+
+    // Next line, or null at end of file
+    String next() throws IOException {
+        int len = 0;
+        int b;
+        while ((b = in.read()) >= 0) {
+            pos++;
+            if (b == '\n') break;
+            if (len == line.length) line = Arrays.copyOf(line, len * 2);
+            line[len++] = (byte) b;
+        }
+        if (b < 0 && len == 0) return null;
+        if (len > 0 && line[len - 1] == '\r') len--;
+        return new String(line, 0, len, java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    String at(long offset) throws IOException {
+        skipTo(offset);
+        return next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
+
+// Log storage split into segments under one directory, rolled by size or age. Closed segments are
+// gzip-compressed in the background and remain queryable through their indexes.
+class LogStore implements Closeable {
+    static final java.time.format.DateTimeFormatter STAMP =
+        java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(java.time.ZoneId.systemDefault());
+
+    private final File dir;
+    private final long segmentBytes;
+    private final long segmentMillis;
+    private final List<LogSegment> closed = new java.util.concurrent.CopyOnWriteArrayList<>();
+    private final java.util.concurrent.ExecutorService compressor = java.util.concurrent.Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "log-compressor");
+        t.setDaemon(true);
+        return t;
+    });
+    private LogSegment active;
+    private OutputStream out;
+
+    public LogStore(String dirname) {
+        this(dirname, Long.getLong("dm.log.segmentBytes", 16L << 20), Long.getLong("dm.log.segmentMillis", 24L * 3600 * 1000));
+    }
+
+    public LogStore(String dirname, long segmentBytes, long segmentMillis) {
+        this.dir = new File(dirname);
+        this.segmentBytes = segmentBytes;
+        this.segmentMillis = segmentMillis;
+        dir.mkdirs();
+        try {
+            migrateLegacy(new File("logs.txt"));
+            open();
+        } catch (IOException e) {
+            System.out.println("Error opening logs: " + e.getMessage());
+        }
+    }
+
+    // A logs.txt from before segmented storage becomes the oldest segment
+    private void migrateLegacy(File legacy) throws IOException {
+        if (!legacy.exists()) return;
+        long base = legacy.lastModified();
+        try (LineCursor cursor = new LineCursor(legacy, 0)) {
+            String first = cursor.next();
+            long ts = first == null ? -1 : timestampOf(first);
+            if (ts >= 0) base = ts;
+        }
+        java.nio.file.Files.move(legacy.toPath(), new File(dir, "segment-" + base + ".log").toPath());
+    }
+
+    private void open() throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("segment-") && (name.endsWith(".log") || name.endsWith(".log.gz")));
+        TreeMap<Long, File> byBase = new TreeMap<>();
+        for (File f : files == null ? new File[0] : files) {
+            String name = f.getName();
+            long base = Long.parseLong(name.substring(8, name.indexOf('.')));
+            File seen = byBase.get(base);
+            if (seen != null) {
+                // Crashed between compressing and deleting the original: the .gz is complete
+                File plain = seen.getName().endsWith(".gz") ? f : seen;
+                plain.delete();
+                byBase.put(base, plain == f ? seen : f);
+            } else {
+                byBase.put(base, f);
+            }
+        }
+        for (Map.Entry<Long, File> e : byBase.entrySet()) {
+            LogSegment seg = new LogSegment(dir, e.getKey(), e.getValue());
+            boolean last = e.getKey().equals(byBase.lastKey());
+            if (last && !seg.compressed() && !seg.indexFile().exists()) {
+                rebuildIndex(seg);
+                active = seg;
+                out = new BufferedOutputStream(new FileOutputStream(seg.file, true), 1 << 16);
+                continue;
+            }
+            if (seg.indexFile().exists()) {
+                seg.readIndex(true);
+            } else {
+                rebuildIndex(seg);
+                seg.writeIndex();
+                seg.readIndex(true);
+            }
+            closed.add(seg);
+            if (!seg.compressed()) compressLater(seg);
+        }
+    }
+
+    private void rebuildIndex(LogSegment seg) throws IOException {
+        long offset = 0;
+        long ts = seg.baseMillis;
+        Clock clock = new Clock(seg.baseMillis);
+        try (LineCursor cursor = new LineCursor(seg.file, 0)) {
+            String line;
+            while ((line = cursor.next()) != null) {
+                int length = line.getBytes(java.nio.charset.StandardCharsets.UTF_8).length + 1;
+                long second = clock.secondOf(line);
+                if (second >= 0) ts = second * 1000;
+                seg.index(ts, userOf(line), offset, length);
+                offset += length;
+            }
+        }
+    }
+
+    static long timestampOf(String line) {
+        if (line.length() < 21 || line.charAt(0) != '[' || line.charAt(20) != ']') return -1;
+        try {
+            return java.time.Instant.from(STAMP.parse(line.substring(1, 20))).toEpochMilli();
+        } catch (java.time.DateTimeException e) {
+            return -1;
+        }
+    }
+
+    // Turns line stamps (local time, second resolution) into epoch seconds, reading lines in file order.
+    // When clocks go back an hour is repeated and its stamps name two instants each; lines are written in
+    // time order, so the one that does not go back before the lines already read is meant.
+    static final class Clock {
+        private static final java.time.format.DateTimeFormatter LOCAL = java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        private static final java.time.zone.ZoneRules RULES = STAMP.getZone().getRules();
+
+        private long notBefore;   // epoch millis no later than the next line's
+        private String lastStamp;
+        private long lastSecond;
+
+        Clock(long notBefore) {
+            this.notBefore = notBefore;
+        }
+
+        // Epoch second of the line's stamp, or -1 if it has none
+        long secondOf(String line) {
+            if (line.length() < 21 || line.charAt(0) != '[' || line.charAt(20) != ']') return -1;
+            String stamp = line.substring(1, 20);
+            if (stamp.equals(lastStamp)) return lastSecond;
+            java.time.LocalDateTime local;
+            try {
+                local = java.time.LocalDateTime.parse(stamp, LOCAL);
+            } catch (java.time.DateTimeException e) {
+                return -1;
+            }
+            List<java.time.ZoneOffset> offsets = RULES.getValidOffsets(local);
+            long second;
+            if (offsets.isEmpty()) {
+                second = java.time.ZonedDateTime.ofLocal(local, STAMP.getZone(), null).toEpochSecond();
+            } else {
+                // Earlier instant first; a second of slack allows for events stamped slightly out of order
+                second = local.toEpochSecond(offsets.get(0));
+                if (offsets.size() > 1 && second * 1000 < notBefore - 1000) second = local.toEpochSecond(offsets.get(1));
+            }
+            lastStamp = stamp;
+            lastSecond = second;
+            notBefore = Math.max(notBefore, second * 1000);
+            return second;
+        }
+    }
+
+    static String userOf(String line) {
+        int at = line.lastIndexOf(" (User: ");
+        return at < 0 || !line.endsWith(")") ? "" : line.substring(at + 8, line.length() - 1);
+    }
+
+    // Called by the audit writer thread only
+    public synchronized void append(long ts, String user, String line) throws IOException {
+        if (active == null || active.bytes >= segmentBytes || (active.lines > 0 && ts - active.minTs >= segmentMillis)) roll(ts);
+        byte[] bytes = (line + "\n").getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        out.write(bytes);
+        active.index(ts, user, active.bytes, bytes.length);
+    }
+
+    public synchronized void flush() throws IOException {
+        if (out != null) out.flush();
+    }
+
+    private void roll(long ts) throws IOException {
+        if (active != null) {
+            out.close();
+            LogSegment done = active;
+            done.writeIndex();
+            done.readIndex(true);
+            closed.add(done);
+            compressLater(done);
+        }
+        long base = ts;
+        while (new File(dir, "segment-" + base + ".log").exists() || new File(dir, "segment-" + base + ".log.gz").exists()) base++;
+        active = new LogSegment(dir, base, new File(dir, "segment-" + base + ".log"));
+        out = new BufferedOutputStream(new FileOutputStream(active.file, true), 1 << 16);
+    }
+
+    private void compressLater(LogSegment seg) {
+        compressor.submit(() -> {
+            File plain = seg.file;
+            File gz = new File(dir, plain.getName() + ".gz");
+            File tmp = new File(dir, plain.getName() + ".gz.tmp");
+            try (InputStream in = new FileInputStream(plain);
+                 OutputStream zip = new java.util.zip.GZIPOutputStream(new FileOutputStream(tmp), 1 << 16)) {
+                in.transferTo(zip);
+            } catch (IOException e) {
+                System.out.println("Error compressing " + plain + ": " + e.getMessage());
+                tmp.delete();
+                return;
+            }
+            try {
+                java.nio.file.Files.move(tmp.toPath(), gz.toPath(), java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+                seg.replaceFile(gz);
+            } catch (IOException e) {
+                System.out.println("Error compressing " + plain + ": " + e.getMessage());
+            }
+        });
+    }
+
+    // Lines in [from, to] (epoch millis, second resolution), optionally only those by user, oldest first.
+    // Segments outside the range or without the user are skipped without being opened.
+    public void query(String user, long from, long to, java.util.function.Consumer<String> sink) throws IOException {
+        long fromSecond = Math.floorDiv(from, 1000);
+        long toSecond = Math.floorDiv(to, 1000);
+        List<LogSegment> segments;
+        LogSegment current;
+        long activeStart = 0;
+        long activeStartMillis = 0;
+        long activeBytes = 0;
+        LongList activeOffsets = null;
+        synchronized (this) {
+            flush();
+            segments = new ArrayList<>(closed);
+            current = active;
+            if (current != null && current.overlaps(from, to) && (user == null || current.users.contains(user))) {
+                // The writer keeps appending; copy what was there when the query started
+                int entry = current.startEntry(from);
+                activeStart = current.sparseOffset(entry);
+                activeStartMillis = current.sparseMillis(entry);
+                activeBytes = current.bytes;
+                activeOffsets = user == null ? null : current.postings.get(user).copy();
+                segments.add(current);
+            }
+        }
+        for (LogSegment seg : segments) {
+            boolean live = seg == current;
+            if (!live && (!seg.overlaps(from, to) || (user != null && !seg.users.contains(user)))) continue;
+            File file = seg.pin();
+            try {
+                LongList offsets;
+                long start;
+                long startMillis;
+                long limit;
+                if (live) {
+                    start = activeStart;
+                    startMillis = activeStartMillis;
+                    offsets = activeOffsets;
+                    limit = activeBytes;
+                } else {
+                    LogSegment index = seg.loadIndex(file);
+                    int entry = index.startEntry(from);
+                    start = index.sparseOffset(entry);
+                    startMillis = index.sparseMillis(entry);
+                    offsets = user == null ? null : index.postings.get(user);
+                    limit = index.bytes;
+                }
+                scan(file, start, limit, offsets, new Clock(startMillis), fromSecond, toSecond, sink);
+            } finally {
+                seg.unpin();
+            }
+        }
+    }
+
+    // Every line from start, or only those at the given offsets, up to limit bytes into the segment.
+    // The clock starts at the indexed time of the line at start.
+    private static void scan(File file, long start, long limit, LongList offsets, Clock clock, long fromSecond, long toSecond,
+                             java.util.function.Consumer<String> sink) throws IOException {
+        try (LineCursor cursor = new LineCursor(file, start)) {
+            if (offsets == null) {
+                long pos = start;
+                String line;
+                while (pos < limit && (line = cursor.next()) != null) {
+                    pos += line.getBytes(java.nio.charset.StandardCharsets.UTF_8).length + 1;
+                    if (emit(line, clock, fromSecond, toSecond, sink)) break;
+                }
+            } else {
+                int n = offsets.size();
+                for (int i = firstAtOrAfter(offsets, start); i < n; i++) {
+                    long off = offsets.get(i);
+                    if (off >= limit) break;
+                    if (emit(cursor.at(off), clock, fromSecond, toSecond, sink)) break;
+                }
+            }
+        }
+    }
+
+    private static int firstAtOrAfter(LongList offsets, long start) {
+        int lo = 0, hi = offsets.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (offsets.get(mid) < start) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Lines are in time order within a segment, so the first one past the range ends the scan. Stamps are
+    // compared as instants: as local text they go back when clocks do, and would end the scan early.
+    private static boolean emit(String line, Clock clock, long fromSecond, long toSecond, java.util.function.Consumer<String> sink) {
+        if (line == null) return true;
+        long second = clock.secondOf(line);
+        if (second >= 0) {
+            if (second > toSecond) return true;
+            if (second < fromSecond) return false;
+        }
+        sink.accept(line);
+        return false;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (out != null) out.close();
+            out = null;
+        } catch (IOException e) {
+            System.out.println("Error closing logs: " + e.getMessage());
+        }
+        compressor.shutdown();
+    }
+}
+
+// Per-disaster timelines in one append-only file (timelines.dat). Each event is stored as
+// [int disasterId][int byte length][UTF-8 text]; memory holds only the event offsets per disaster and a
+// small LRU cache of recently viewed pages, so a page is read without loading the whole timeline.
+class TimelineStore implements Closeable {
+    private record Page(int disasterId, int from, int count) {}
+
+    private final File file;
+    private final IntMap<LongList> offsets = new IntMap<>(16);
+    private final Map<Page, List<String>> cache;
+    private FileChannel channel;
+    private final java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate(8);
+    private long end;
+
+    public TimelineStore(String filename) {
+        this(filename, Integer.getInteger("dm.timeline.cachePages", 32));
+    }
+
+    public TimelineStore(String filename, int cachePages) {
+        this.file = new File(filename);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Page, List<String>> eldest) {
+                return size() > cachePages;
+            }
+        };
+        try {
+            channel = FileChannel.open(file.toPath(), java.nio.file.StandardOpenOption.CREATE,
+                java.nio.file.StandardOpenOption.READ, java.nio.file.StandardOpenOption.WRITE);
+            rebuildIndex();
+        } catch (IOException e) {
+            System.out.println("Error opening timelines: " + e.getMessage());
+        }
+    }
+
+    // Walks the record headers only; a torn record at the end (crash mid-append) is cut off
+    private void rebuildIndex() throws IOException {
+        long size = channel.size();
+        long pos = 0;
+        java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(8);
+        while (pos + 8 <= size) {
+            buf.clear();
+            while (buf.hasRemaining() && channel.read(buf, pos + buf.position()) > 0) { }
+            buf.flip();
+            int disasterId = buf.getInt();
+            int length = buf.getInt();
+            if (length < 0 || pos + 8 + length > size) break;
+            offsets.computeIfAbsent(disasterId, k -> new LongList()).add(pos);
+            pos += 8 + length;
+        }
+        if (pos < size) channel.truncate(pos);
+        end = pos;
+    }
+
+    public synchronized void append(int disasterId, String entry) {
+        if (channel == null) return;
+        byte[] text = entry.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        java.nio.ByteBuffer record = java.nio.ByteBuffer.allocate(8 + text.length).putInt(disasterId).putInt(text.length).put(text).flip();
+        try {
+            long pos = end;
+            while (record.hasRemaining()) pos += channel.write(record, pos);
+            offsets.computeIfAbsent(disasterId, k -> new LongList()).add(end);
+            end = pos;
+            cache.keySet().removeIf(p -> p.disasterId() == disasterId);
+        } catch (IOException e) {
+            System.out.println("Error writing timeline: " + e.getMessage());
+        }
+    }
+
+    public synchronized int size(int disasterId) {
+        LongList list = offsets.get(disasterId);
+        return list == null ? 0 : list.size();
+    }
+
+    // Entries [from, from + count) of the disaster's timeline, oldest first
+    public synchronized List<String> page(int disasterId, int from, int count) throws IOException {
+        LongList list = offsets.get(disasterId);
+        if (list == null || from >= list.size() || count <= 0) return Collections.emptyList();
+        int to = Math.min(list.size(), from + count);
+        Page key = new Page(disasterId, from, to - from);
+        List<String> cached = cache.get(key);
+        if (cached != null) return cached;
+        List<String> entries = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            long pos = list.get(i);
+            header.clear();
+            while (header.hasRemaining() && channel.read(header, pos + header.position()) > 0) { }
+            header.flip();
+            header.getInt();
+            java.nio.ByteBuffer text = java.nio.ByteBuffer.allocate(header.getInt());
+            while (text.hasRemaining() && channel.read(text, pos + 8 + text.position()) > 0) { }
+            entries.add(new String(text.array(), java.nio.charset.StandardCharsets.UTF_8));
+        }
+        cache.put(key, entries);
+        return entries;
+    }
+
+    public synchronized List<String> latest(int disasterId, int count) throws IOException {
+        int size = size(disasterId);
+        return page(disasterId, Math.max(0, size - count), Math.min(count, size));
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+            }
+            channel = null;
+        } catch (IOException e) {
+            System.out.println("Error closing timelines: " + e.getMessage());
+        }
+    }
+}
+
+// Audit log pipeline: callers put events on a bounded ring buffer (blocking when it is full) and a single
+// writer thread formats them and appends them to the log store, one flush per batch
+class AuditLog implements Closeable {
+    record Event(long timeMillis, String user, String action) {}
+
+    private static final java.time.format.DateTimeFormatter FORMAT = LogStore.STAMP;
+    private static final Event STOP = new Event(0, null, null);
+
+    private final LogStore store;
+    private final java.util.concurrent.ArrayBlockingQueue<Event> ring;
+    private final Thread writer;
+    private long enqueued;   // guarded by this
+    private long written;    // guarded by this
+    private volatile boolean closed;
+    // Set when the writer thread stops on an error; events logged after that are dropped and counted
+    private volatile Exception failure;
+    private final java.util.concurrent.atomic.AtomicLong dropped = new java.util.concurrent.atomic.AtomicLong();
+
+    // Timestamp of the last formatted second, reused while events arrive within the same second
+    private long cachedSecond = -1;
+    private String cachedStamp;
+
+    public AuditLog(LogStore store) {
+        this(store, Integer.getInteger("dm.log.ringSize", 4096));
+    }
+
+    public AuditLog(LogStore store, int capacity) {
+        this.store = store;
+        this.ring = new java.util.concurrent.ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::drain, "audit-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Waits while the ring is full, as long as the writer is still running; never blocks on a dead writer
+    public void log(String user, String action) {
+        if (closed) return;
+        Event event = new Event(System.currentTimeMillis(), user, action);
+        try {
+            while (failure == null && writer.isAlive()) {
+                if (ring.offer(event, 100, java.util.concurrent.TimeUnit.MILLISECONDS)) {
+                    synchronized (this) {
+                        enqueued++;
+                    }
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dropped.incrementAndGet();
+    }
+
+    // Events logged but never written because the writer had stopped (or the caller was interrupted)
+    public long dropped() { return dropped.get(); }
+
+    // Formats a log line the way it has always appeared in logs.txt
+    public static String format(long timeMillis, String user, String action) {
+        return "[" + FORMAT.format(java.time.Instant.ofEpochMilli(timeMillis)) + "] " + action + " (User: " + user + ")";
+    }
+
+    private String stamp(long timeMillis) {
+        long second = timeMillis / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedStamp = FORMAT.format(java.time.Instant.ofEpochSecond(second));
+        }
+        return cachedStamp;
+    }
+
+    private void drain() {
+        List<Event> batch = new ArrayList<>();
+        StringBuilder line = new StringBuilder(128);
+        try (LogStore out = store) {
+            while (true) {
+                batch.add(ring.take());
+                ring.drainTo(batch);
+                boolean stop = false;
+                for (Event e : batch) {
+                    if (e == STOP) {
+                        stop = true;
+                        continue;
+                    }
+                    line.setLength(0);
+                    line.append('[').append(stamp(e.timeMillis())).append("] ").append(e.action())
+                        .append(" (User: ").append(e.user()).append(')');
+                    out.append(e.timeMillis(), e.user(), line.toString());
+                }
+                out.flush();
+                synchronized (this) {
+                    written += batch.size() - (stop ? 1 : 0);
+                    notifyAll();
+                }
+                batch.clear();
+                if (stop) return;
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            System.out.println("Error writing logs: " + e.getMessage() + ". Further log events will be dropped.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Blocks until every event logged before this call is in the file
+    public synchronized void sync() {
+        long target = enqueued;
+        while (written < target && writer.isAlive()) {
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            while (failure == null && writer.isAlive()) {
+                if (ring.offer(STOP, 100, java.util.concurrent.TimeUnit.MILLISECONDS)) {
+                    writer.join();
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.get() > 0) System.out.println(dropped.get() + " log event(s) were dropped because the log writer had stopped.");
+    }
+}
+
+// Append-only write-ahead journal of entity changes.
+// Each record is one line: '+' (upsert) or '-' (delete), an entity kind letter, ',' and the
+// serialized record or id. Appends are buffered until commit(), which group-commits everything
+// written since the last commit. Once the journal grows past a threshold it is rolled over and the
+// snapshot files are rewritten in the background; startup loads the snapshot and replays the tail.
+class Journal implements Closeable {
+    enum FsyncPolicy { ALWAYS, INTERVAL, NEVER }
+
+    static final String FILE = "journal.log";
+    static final String ROLLED = "journal.old";
+
+    private final FsyncPolicy fsync;
+    private final long fsyncIntervalMillis;
+    private final long compactBytes;
+    private final java.util.concurrent.ScheduledExecutorService background;
+    private FileOutputStream out;
+    private BufferedWriter writer;
+    private long size;
+    private boolean pending;    // appended but not yet committed
+    private boolean unsynced;   // committed but not yet forced to disk
+    private boolean suspended;  // set while loading so replayed records are not re-journaled
+    private java.util.concurrent.Future<?> compaction;
+
+    public Journal() {
+        this(FsyncPolicy.valueOf(System.getProperty("dm.journal.fsync", "interval").toUpperCase()),
+             Long.getLong("dm.journal.fsyncMillis", 1000),
+             Long.getLong("dm.journal.compactBytes", 8L << 20));
+    }
+
+    public Journal(FsyncPolicy fsync, long fsyncIntervalMillis, long compactBytes) {
+        this.fsync = fsync;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.compactBytes = compactBytes;
+        this.background = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal");
+            t.setDaemon(true);
+            return t;
+        });
+        if (fsync == FsyncPolicy.INTERVAL) {
+            background.scheduleWithFixedDelay(this::syncIfDirty, fsyncIntervalMillis, fsyncIntervalMillis, java.util.concurrent.TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void open() throws IOException {
+        File file = new File(FILE);
+        out = new FileOutputStream(file, true);
+        writer = new BufferedWriter(new OutputStreamWriter(out, java.nio.charset.StandardCharsets.UTF_8), 1 << 16);
+        size = file.length();
+    }
+
+    // Journals every change made to the repository under the given kind letter
+    public <T> void track(Repository<T> repository, char kind, java.util.function.Function<T, String> serializer, java.util.function.ToIntFunction<T> idOf) {
+        repository.addListener(new RepositoryListener<T>() {
+            public void added(T item) { upsert(kind, serializer.apply(item)); }
+            public void removed(T item) { delete(kind, idOf.applyAsInt(item)); }
+            public void replaced(T old, T item) { upsert(kind, serializer.apply(item)); }
+            public void loaded(T item) { }
+            public void unloaded(T item) { }
+        });
+    }
+
+    // A record as it appears in the journal: op, kind letter, ',' and payload
+    static String line(char op, char kind, String payload) {
+        return "" + op + kind + ',' + payload;
+    }
+
+    public synchronized void upsert(char kind, String record) {
+        append('+', kind, record);
+    }
+
+    public synchronized void delete(char kind, int id) {
+        append('-', kind, Integer.toString(id));
+    }
+
+    private void append(char op, char kind, String payload) {
+        if (suspended) return;
+        try {
+            if (writer == null) open();
+            writer.write(op);
+            writer.write(kind);
+            writer.write(',');
+            writer.write(payload);
+            writer.newLine();
+            size += payload.length() + 4;
+            pending = true;
+        } catch (IOException e) {
+            System.out.println("Error writing journal: " + e.getMessage());
+        }
+    }
+
+    // Makes everything appended so far durable according to the fsync policy
+    public synchronized void commit() {
+        if (!pending) return;
+        try {
+            writer.flush();
+            pending = false;
+            if (fsync == FsyncPolicy.ALWAYS) out.getChannel().force(false);
+            else unsynced = true;
+        } catch (IOException e) {
+            System.out.println("Error committing journal: " + e.getMessage());
+        }
+    }
+
+    private synchronized void syncIfDirty() {
+        if (!unsynced || out == null) return;
+        try {
+            out.getChannel().force(false);
+            unsynced = false;
+        } catch (IOException e) {
+            System.out.println("Error syncing journal: " + e.getMessage());
+        }
+    }
+
+    public synchronized void suspend() { suspended = true; }
+    public synchronized void resume() { suspended = false; }
+
+    // Replays a leftover rolled journal (from an interrupted compaction) and then the live one.
+    // A crash in the middle of an append leaves a torn last record: one without its newline, or one
+    // apply rejects with IllegalArgumentException. The valid log ends before it, so the file is cut
+    // back to the last good record and whatever follows it is dropped.
+    public void replay(java.util.function.Consumer<String> apply) {
+        for (String name : new String[] { ROLLED, FILE }) {
+            File file = new File(name);
+            if (!file.exists()) continue;
+            long good = 0;
+            String torn = null;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+                ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+                long offset = 0;
+                int b;
+                while ((b = in.read()) != -1) {
+                    offset++;
+                    if (b != '\n') {
+                        record.write(b);
+                        continue;
+                    }
+                    String line = record.toString(java.nio.charset.StandardCharsets.UTF_8);
+                    if (line.endsWith("\r")) line = line.substring(0, line.length() - 1);
+                    record.reset();
+                    try {
+                        if (!line.isEmpty()) {
+                            if (line.length() < 3) throw new IllegalArgumentException("Incomplete record");
+                            apply.accept(line);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        torn = line;
+                        break;
+                    }
+                    good = offset;
+                }
+                if (torn == null && record.size() > 0) torn = record.toString(java.nio.charset.StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                System.out.println("Error replaying journal: " + e.getMessage());
+                continue;
+            }
+            if (torn == null) continue;
+            try (FileOutputStream truncate = new FileOutputStream(file, true)) {
+                truncate.getChannel().truncate(good);
+                System.out.println("Journal " + name + " ends in an incomplete record (" + torn + "); recovered up to byte "
+                    + good + " and dropped the rest.");
+            } catch (IOException e) {
+                System.out.println("Error truncating journal: " + e.getMessage());
+            }
+        }
+    }
+
+    public void compactIfNeeded(java.util.function.Supplier<Runnable> snapshot) {
+        if (size >= compactBytes) compact(snapshot);
+    }
+
+    // Rolls the journal over and rewrites the snapshot in the background. The supplier runs on the
+    // calling thread and must capture the current state; the Runnable it returns writes it out.
+    public synchronized void compact(java.util.function.Supplier<Runnable> snapshot) {
+        awaitCompaction();
+        commit();
+        try {
+            if (writer != null) {
+                out.getChannel().force(false);
+                writer.close();
+                writer = null;
+            }
+            File live = new File(FILE);
+            File rolled = new File(ROLLED);
+            if (rolled.exists()) {
+                // A previous snapshot failed: keep its records and append the newer ones behind them
+                try (FileChannel src = FileChannel.open(live.toPath());
+                     FileChannel dst = FileChannel.open(rolled.toPath(), java.nio.file.StandardOpenOption.APPEND)) {
+                    for (long pos = 0, n = src.size(); pos < n; ) pos += src.transferTo(pos, n - pos, dst);
+                    dst.force(false);
+                }
+                live.delete();
+            } else if (live.exists()) {
+                java.nio.file.Files.move(live.toPath(), rolled.toPath());
+            }
+            open();
+        } catch (IOException e) {
+            System.out.println("Error rolling journal: " + e.getMessage());
+            return;
+        }
+        Runnable writeSnapshot = snapshot.get();
+        compaction = background.submit(() -> {
+            writeSnapshot.run();
+            new File(ROLLED).delete();
+        });
+    }
+
+    synchronized void awaitCompaction() {
+        if (compaction == null) return;
+        try {
+            compaction.get();
+        } catch (java.util.concurrent.ExecutionException e) {
+            System.out.println("Snapshot compaction failed: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compaction = null;
+    }
+
+    @Override
+    public synchronized void close() {
+        commit();
+        awaitCompaction();
+        try {
+            if (writer != null) {
+                out.getChannel().force(false);
+                writer.close();
+                writer = null;
+            }
+        } catch (IOException e) {
+            System.out.println("Error closing journal: " + e.getMessage());
+        }
+        background.shutdown();
+    }
+}
+
+// Compact binary snapshot of disasters, victims and teams (users stay in users.txt).
+// Layout: header ("DMSN", u16 version), dictionary pages, record blocks, then a footer index of every
+// page and block (kind, offset, length, record count), the footer offset and "DMSF". Every page and
+// block is followed by the CRC32 of its payload. Enums are stored as ordinals, ids as zigzag varint
+// deltas, and repeated strings (location, date, injury level, team name, status) as dictionary codes.
+// Since version 2, disaster and team records end with a coordinates flag byte and, if set, two doubles.
+class BinarySnapshot {
+    static final String FILE = "snapshot.bin";
+    private static final int MAGIC = 0x444D534E;        // "DMSN"
+    private static final int FOOTER_MAGIC = 0x444D5346; // "DMSF"
+    private static final short VERSION = 2;   // 2 added optional coordinates to disasters and teams
+    private static final int BLOCK_RECORDS = 1 << 16;
+    private static final byte DICTIONARY = 'S', DISASTERS = 'D', VICTIMS = 'V', TEAMS = 'T';
+    private static final DisasterType[] TYPES = DisasterType.values();
+    private static final Severity[] SEVERITIES = Severity.values();
+    private static final TeamSpecialty[] SPECIALTIES = TeamSpecialty.values();
+
+    record Contents(List<Disaster> disasters, List<Victim> victims, List<RescueTeam> teams) {}
+
+    private record Block(byte kind, long offset, int length, int records) {}
+
+    // Growable byte buffer with varint and string encoders
+    private static final class Out {
+        byte[] bytes = new byte[1 << 16];
+        int len;
+
+        void ensure(int n) {
+            if (len + n > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, len + n));
+        }
+        void u8(int v) {
+            ensure(1);
+            bytes[len++] = (byte) v;
+        }
+        void varint(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                bytes[len++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[len++] = (byte) v;
+        }
+        void zigzag(int v) { varint((v << 1) ^ (v >> 31)); }
+        void f64(double v) {
+            ensure(8);
+            long bits = Double.doubleToLongBits(v);
+            for (int shift = 56; shift >= 0; shift -= 8) bytes[len++] = (byte) (bits >>> shift);
+        }
+        // Flag byte, then latitude and longitude when present
+        void coordinates(boolean present, double latitude, double longitude) {
+            u8(present ? 1 : 0);
+            if (present) {
+                f64(latitude);
+                f64(longitude);
+            }
+        }
+        void string(String s) {
+            byte[] b = s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            varint(b.length);
+            ensure(b.length);
+            System.arraycopy(b, 0, bytes, len, b.length);
+            len += b.length;
+        }
+    }
+
+    private static final class In {
+        final byte[] bytes;
+        int pos;
+
+        In(byte[] bytes) { this.bytes = bytes; }
+
+        int u8() { return bytes[pos++] & 0xFF; }
+        int varint() {
+            int v = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[pos++];
+                v |= (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+        }
+        int zigzag() {
+            int v = varint();
+            return (v >>> 1) ^ -(v & 1);
+        }
+        double f64() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) bits = (bits << 8) | (bytes[pos++] & 0xFF);
+            return Double.longBitsToDouble(bits);
+        }
+        String string() {
+            int n = varint();
+            String s = new String(bytes, pos, n, java.nio.charset.StandardCharsets.UTF_8);
+            pos += n;
+            return s;
+        }
+    }
+
+    // Two passes: the first collects the dictionary, the second streams pages and blocks to disk
+    public static void write(String filename, List<Disaster> ds, List<Victim> vs, List<RescueTeam> ts) throws IOException {
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> words = new ArrayList<>();
+        java.util.function.Consumer<String> intern = w -> codes.computeIfAbsent(w, k -> {
+            words.add(k);
+            return words.size() - 1;
+        });
+        for (Disaster d : ds) {
+            intern.accept(d.getLocation());
+            intern.accept(d.getDate());
+        }
+        for (Victim v : vs) intern.accept(v.getInjuryLevel());
+        for (RescueTeam t : ts) {
+            intern.accept(t.getTeamName());
+            intern.accept(t.getStatus());
+        }
+
+        java.nio.file.Path target = java.nio.file.Paths.get(filename);
+        java.nio.file.Path tmp = java.nio.file.Paths.get(filename + ".tmp");
+        List<Block> index = new ArrayList<>();
+        try (FileChannel ch = FileChannel.open(tmp, java.nio.file.StandardOpenOption.CREATE,
+                java.nio.file.StandardOpenOption.TRUNCATE_EXISTING, java.nio.file.StandardOpenOption.WRITE)) {
+            java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate(6).putInt(MAGIC).putShort(VERSION).flip();
+            while (header.hasRemaining()) ch.write(header);
+            Out out = new Out();
+            for (int from = 0; from < words.size(); from += BLOCK_RECORDS) {
+                int to = Math.min(words.size(), from + BLOCK_RECORDS);
+                out.len = 0;
+                for (int i = from; i < to; i++) out.string(words.get(i));
+                index.add(writeBlock(ch, DICTIONARY, out, to - from));
+            }
+            for (int from = 0; from < ds.size(); from += BLOCK_RECORDS) {
+                int to = Math.min(ds.size(), from + BLOCK_RECORDS);
+                out.len = 0;
+                int prev = 0;
+                for (Disaster d : ds.subList(from, to)) {
+                    out.zigzag(d.getId() - prev);
+                    prev = d.getId();
+                    out.u8(d.getType().ordinal());
+                    out.u8(d.getSeverity().ordinal());
+                    out.varint(codes.get(d.getLocation()));
+                    out.varint(codes.get(d.getDate()));
+                    out.string(d.getDescription());
+                    out.coordinates(d.hasCoordinates(), d.getLatitude(), d.getLongitude());
+                }
+                index.add(writeBlock(ch, DISASTERS, out, to - from));
+            }
+            for (int from = 0; from < vs.size(); from += BLOCK_RECORDS) {
+                int to = Math.min(vs.size(), from + BLOCK_RECORDS);
+                out.len = 0;
+                int prev = 0;
+                for (Victim v : vs.subList(from, to)) {
+                    out.zigzag(v.getId() - prev);
+                    prev = v.getId();
+                    out.string(v.getName());
+                    out.zigzag(v.getAge());
+                    out.string(v.getContact());
+                    out.varint(codes.get(v.getInjuryLevel()));
+                    out.zigzag(v.getDisasterId());
+                }
+                index.add(writeBlock(ch, VICTIMS, out, to - from));
+            }
+            for (int from = 0; from < ts.size(); from += BLOCK_RECORDS) {
+                int to = Math.min(ts.size(), from + BLOCK_RECORDS);
+                out.len = 0;
+                int prev = 0;
+                for (RescueTeam t : ts.subList(from, to)) {
+                    out.zigzag(t.getId() - prev);
+                    prev = t.getId();
+                    out.varint(codes.get(t.getTeamName()));
+                    out.u8(t.getSpecialty().ordinal());
+                    out.zigzag(t.getAssignedDisasterId());
+                    out.varint(codes.get(t.getStatus()));
+                    out.coordinates(t.hasCoordinates(), t.getLatitude(), t.getLongitude());
+                }
+                index.add(writeBlock(ch, TEAMS, out, to - from));
+            }
+            long footerOffset = ch.position();
+            java.nio.ByteBuffer footer = java.nio.ByteBuffer.allocate(4 + index.size() * 17 + 12);
+            footer.putInt(index.size());
+            for (Block b : index) footer.put(b.kind()).putLong(b.offset()).putInt(b.length()).putInt(b.records());
+            footer.putLong(footerOffset).putInt(FOOTER_MAGIC).flip();
+            while (footer.hasRemaining()) ch.write(footer);
+            ch.force(true);
+        }
+        java.nio.file.Files.move(tmp, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Block writeBlock(FileChannel ch, byte kind, Out out, int records) throws IOException {
+        long offset = ch.position();
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        crc.update(out.bytes, 0, out.len);
+        java.nio.ByteBuffer payload = java.nio.ByteBuffer.wrap(out.bytes, 0, out.len);
+        while (payload.hasRemaining()) ch.write(payload);
+        java.nio.ByteBuffer sum = java.nio.ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip();
+        while (sum.hasRemaining()) ch.write(sum);
+        return new Block(kind, offset, out.len, records);
+    }
+
+    public static Contents read(String filename) throws IOException {
+        try (FileChannel ch = FileChannel.open(java.nio.file.Paths.get(filename))) {
+            long size = ch.size();
+            java.nio.ByteBuffer header = readFully(ch, 0, 6);
+            if (size < 18 || header.getInt() != MAGIC) throw new IOException(filename + " is not a snapshot file");
+            short version = header.getShort();
+            if (version < 1 || version > VERSION) throw new IOException("Unsupported snapshot version " + version);
+            boolean coordinates = version >= 2;
+            java.nio.ByteBuffer tail = readFully(ch, size - 12, 12);
+            long footerOffset = tail.getLong();
+            if (tail.getInt() != FOOTER_MAGIC) throw new IOException(filename + " has no footer (truncated?)");
+            java.nio.ByteBuffer footer = readFully(ch, footerOffset, (int) (size - 12 - footerOffset));
+            List<Block> index = new ArrayList<>();
+            for (int i = footer.getInt(); i > 0; i--) index.add(new Block(footer.get(), footer.getLong(), footer.getInt(), footer.getInt()));
+
+            List<String> words = new ArrayList<>();
+            for (Block b : index) {
+                if (b.kind() != DICTIONARY) continue;
+                In in = new In(payload(ch, b));
+                for (int i = 0; i < b.records(); i++) words.add(in.string());
+            }
+            String[] dict = words.toArray(new String[0]);
+            return new Contents(
+                decode(ch, index, DISASTERS, (in, n) -> decodeDisasters(in, n, dict, coordinates)),
+                decode(ch, index, VICTIMS, (in, n) -> decodeVictims(in, n, dict)),
+                decode(ch, index, TEAMS, (in, n) -> decodeTeams(in, n, dict, coordinates)));
+        }
+    }
+
+    // Blocks of one kind are read and decoded in parallel, then concatenated in file order
+    private static <T> List<T> decode(FileChannel ch, List<Block> index, byte kind, java.util.function.BiFunction<In, Integer, List<T>> decoder) {
+        List<List<T>> parts = index.parallelStream()
+            .filter(b -> b.kind() == kind)
+            .map(b -> {
+                try {
+                    return decoder.apply(new In(payload(ch, b)), b.records());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })
+            .toList();
+        List<T> all = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+        for (List<T> part : parts) all.addAll(part);
+        return all;
+    }
+
+    private static List<Disaster> decodeDisasters(In in, int n, String[] dict, boolean coordinates) {
+        List<Disaster> out = new ArrayList<>(n);
+        int id = 0;
+        for (int i = 0; i < n; i++) {
+            id += in.zigzag();
+            DisasterType type = TYPES[in.u8()];
+            Severity severity = SEVERITIES[in.u8()];
+            String location = dict[in.varint()];
+            String date = dict[in.varint()];
+            String description = in.string();
+            boolean located = coordinates && in.u8() == 1;
+            double latitude = located ? in.f64() : Double.NaN;
+            double longitude = located ? in.f64() : Double.NaN;
+            out.add(new Disaster(id, type, location, severity, date, description, latitude, longitude));
+        }
+        return out;
+    }
+
+    private static List<Victim> decodeVictims(In in, int n, String[] dict) {
+        List<Victim> out = new ArrayList<>(n);
+        int id = 0;
+        for (int i = 0; i < n; i++) {
+            id += in.zigzag();
+            String name = in.string();
+            int age = in.zigzag();
+            String contact = in.string();
+            String injuryLevel = dict[in.varint()];
+            out.add(new Victim(id, name, age, contact, injuryLevel, in.zigzag()));
+        }
+        return out;
+    }
+
+    private static List<RescueTeam> decodeTeams(In in, int n, String[] dict, boolean coordinates) {
+        List<RescueTeam> out = new ArrayList<>(n);
+        int id = 0;
+        for (int i = 0; i < n; i++) {
+            id += in.zigzag();
+            String teamName = dict[in.varint()];
+            TeamSpecialty specialty = SPECIALTIES[in.u8()];
+            int disasterId = in.zigzag();
+            String status = dict[in.varint()];
+            boolean located = coordinates && in.u8() == 1;
+            double latitude = located ? in.f64() : Double.NaN;
+            double longitude = located ? in.f64() : Double.NaN;
+            out.add(new RescueTeam(id, teamName, specialty, disasterId, status, latitude, longitude));
+        }
+        return out;
+    }
+
+    // Reads a page or block with one bulk read and checks its CRC
+    private static byte[] payload(FileChannel ch, Block b) throws IOException {
+        java.nio.ByteBuffer buf = readFully(ch, b.offset(), b.length() + 4);
+        byte[] bytes = new byte[b.length()];
+        buf.get(bytes);
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        crc.update(bytes);
+        if ((int) crc.getValue() != buf.getInt()) throw new IOException("Snapshot block at offset " + b.offset() + " is corrupt");
+        return bytes;
+    }
+
+    private static java.nio.ByteBuffer readFully(FileChannel ch, long position, int length) throws IOException {
+        java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) throw new EOFException();
+        }
+        return buf.flip();
+    }
+}
+
+// Counters behind showStatistics, updated in O(1) by repository listeners so reading them never rescans
+class Statistics {
+    private final long[] disastersByType = new long[DisasterType.values().length];
+    private final long[] disastersBySeverity = new long[Severity.values().length];
+    private final long[][] disastersByTypeAndSeverity = new long[DisasterType.values().length][Severity.values().length];
+    private final long[] teamsBySpecialty = new long[TeamSpecialty.values().length];
+    private final IntIntMap victimsPerDisaster = new IntIntMap(16);
+    private final IntIntMap teamsPerDisaster = new IntIntMap(16);
+
+    private Statistics() {}
+
+    // Starting point for a detached copy, filled in by the copy methods below
+    static Statistics empty() {
+        return new Statistics();
+    }
+
+    // Each entity kind's counters are only changed by its repository's listeners, so a copy of them taken
+    // under that repository's lock is consistent with its records
+    void copyDisasterCountsTo(Statistics c) {
+        System.arraycopy(disastersByType, 0, c.disastersByType, 0, disastersByType.length);
+        System.arraycopy(disastersBySeverity, 0, c.disastersBySeverity, 0, disastersBySeverity.length);
+        for (int i = 0; i < disastersByTypeAndSeverity.length; i++) {
+            System.arraycopy(disastersByTypeAndSeverity[i], 0, c.disastersByTypeAndSeverity[i], 0, disastersByTypeAndSeverity[i].length);
+        }
+    }
+
+    void copyVictimCountsTo(Statistics c) {
+        victimsPerDisaster.forEach((k, v) -> c.victimsPerDisaster.put(k, v));
+    }
+
+    void copyTeamCountsTo(Statistics c) {
+        System.arraycopy(teamsBySpecialty, 0, c.teamsBySpecialty, 0, teamsBySpecialty.length);
+        teamsPerDisaster.forEach((k, v) -> c.teamsPerDisaster.put(k, v));
+    }
+
+    public Statistics(Repository<Disaster> disasters, Repository<Victim> victims, Repository<RescueTeam> teams) {
+        disasters.addListener(new RepositoryListener<Disaster>() {
+            public void added(Disaster d) { countDisaster(d, 1); }
+            public void removed(Disaster d) { countDisaster(d, -1); }
+            public void cleared() {
+                Arrays.fill(disastersByType, 0);
+                Arrays.fill(disastersBySeverity, 0);
+                for (long[] row : disastersByTypeAndSeverity) Arrays.fill(row, 0);
+            }
+        });
+        victims.addListener(new RepositoryListener<Victim>() {
+            public void added(Victim v) { victimsPerDisaster.increment(v.getDisasterId(), 1); }
+            public void removed(Victim v) { victimsPerDisaster.increment(v.getDisasterId(), -1); }
+            public void loaded(Victim v) { }
+            public void unloaded(Victim v) { }
+            public void cleared() { victimsPerDisaster.clear(); }
+        });
+        teams.addListener(new RepositoryListener<RescueTeam>() {
+            public void added(RescueTeam t) { countTeam(t, 1); }
+            public void removed(RescueTeam t) { countTeam(t, -1); }
+            public void loaded(RescueTeam t) { }
+            public void unloaded(RescueTeam t) { }
+            public void cleared() {
+                Arrays.fill(teamsBySpecialty, 0);
+                teamsPerDisaster.clear();
+            }
+        });
+    }
+
+    private void countDisaster(Disaster d, int delta) {
+        disastersByType[d.getType().ordinal()] += delta;
+        disastersBySeverity[d.getSeverity().ordinal()] += delta;
+        disastersByTypeAndSeverity[d.getType().ordinal()][d.getSeverity().ordinal()] += delta;
+    }
+
+    private void countTeam(RescueTeam t, int delta) {
+        countTeam(t.getSpecialty(), t.getAssignedDisasterId(), delta);
+    }
+
+    private void countTeam(TeamSpecialty specialty, int disasterId, int delta) {
+        teamsBySpecialty[specialty.ordinal()] += delta;
+        teamsPerDisaster.increment(disasterId, delta);
+    }
+
+    // Records that are stored but not in memory (partitioned storage), counted from the partition manifest
+    void countStoredVictim(int disasterId) { victimsPerDisaster.increment(disasterId, 1); }
+    void countStoredTeam(TeamSpecialty specialty, int disasterId) { countTeam(specialty, disasterId, 1); }
+
+    public long disasters(DisasterType type) { return disastersByType[type.ordinal()]; }
+    public long disasters(Severity severity) { return disastersBySeverity[severity.ordinal()]; }
+    public long disasters(DisasterType type, Severity severity) { return disastersByTypeAndSeverity[type.ordinal()][severity.ordinal()]; }
+    public long teams(TeamSpecialty specialty) { return teamsBySpecialty[specialty.ordinal()]; }
+    public int victimsFor(int disasterId) { return victimsPerDisaster.get(disasterId, 0); }
+    public int teamsFor(int disasterId) { return teamsPerDisaster.get(disasterId, 0); }
+    public IntIntMap victimsPerDisaster() { return victimsPerDisaster; }
+    public IntIntMap teamsPerDisaster() { return teamsPerDisaster; }
+    public long disasters() { return Arrays.stream(disastersByType).sum(); }
+    public long victims() { return total(victimsPerDisaster); }
+    public long teams() { return total(teamsPerDisaster); }
+
+    private static long total(IntIntMap counts) {
+        long[] sum = { 0 };
+        counts.forEach((k, v) -> sum[0] += v);
+        return sum[0];
+    }
+
+    // Non-zero counters in declaration order, for display
+    public Map<DisasterType, Long> disastersByType() { return nonZero(DisasterType.class, disastersByType); }
+    public Map<Severity, Long> disastersBySeverity() { return nonZero(Severity.class, disastersBySeverity); }
+    public Map<TeamSpecialty, Long> teamsBySpecialty() { return nonZero(TeamSpecialty.class, teamsBySpecialty); }
+
+    private static <E extends Enum<E>> Map<E, Long> nonZero(Class<E> type, long[] counts) {
+        Map<E, Long> map = new EnumMap<>(type);
+        E[] constants = type.getEnumConstants();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) map.put(constants[i], counts[i]);
+        }
+        return map;
+    }
+
+    // Consistency check: recounts everything from scratch and compares with the maintained counters
+    public boolean matchesRecount(Iterable<Disaster> disasters, Iterable<Victim> victims, Iterable<RescueTeam> teams) {
+        Statistics fresh = new Statistics();
+        for (Disaster d : disasters) fresh.countDisaster(d, 1);
+        for (Victim v : victims) fresh.victimsPerDisaster.increment(v.getDisasterId(), 1);
+        for (RescueTeam t : teams) fresh.countTeam(t, 1);
+        return Arrays.equals(disastersByType, fresh.disastersByType)
+            && Arrays.equals(disastersBySeverity, fresh.disastersBySeverity)
+            && Arrays.deepEquals(disastersByTypeAndSeverity, fresh.disastersByTypeAndSeverity)
+            && Arrays.equals(teamsBySpecialty, fresh.teamsBySpecialty)
+            && victimsPerDisaster.equals(fresh.victimsPerDisaster)
+            && teamsPerDisaster.equals(fresh.teamsPerDisaster);
+    }
+}
+
+// Victims and teams whose disaster no longer exists. Repository listeners only queue what changed (a
+// victim or team, or every record linked to a disaster that came or went, found through the foreign key
+// indexes); a background sweeper rechecks just those, so upkeep grows with the changes, not the tables.
+// A clear (reload) falls back to one full rescan. Readers call sweep() first to see everything queued.
+class OrphanTracker {
+    static final long SWEEP_MILLIS = Long.getLong("dm.orphans.sweepMillis", 1000);
+    private static final long VICTIM = 1L << 32, TEAM = 2L << 32, DISASTER = 3L << 32;
+
+    private final Repository<Disaster> disasters;
+    private final Repository<Victim> victims;
+    private final Repository<RescueTeam> teams;
+    private final ForeignKeyIndex<Victim> victimsByDisaster;
+    private final ForeignKeyIndex<RescueTeam> teamsByDisaster;
+    private final java.util.concurrent.ConcurrentLinkedQueue<Long> changed = new java.util.concurrent.ConcurrentLinkedQueue<>();
+    private volatile boolean rescan;
+    private final Set<Integer> orphanVictims = java.util.concurrent.ConcurrentHashMap.newKeySet();
+    private final Set<Integer> orphanTeams = java.util.concurrent.ConcurrentHashMap.newKeySet();
+
+    public OrphanTracker(Repository<Disaster> disasters, Repository<Victim> victims, Repository<RescueTeam> teams,
+                         ForeignKeyIndex<Victim> victimsByDisaster, ForeignKeyIndex<RescueTeam> teamsByDisaster) {
+        this.disasters = disasters;
+        this.victims = victims;
+        this.teams = teams;
+        this.victimsByDisaster = victimsByDisaster;
+        this.teamsByDisaster = teamsByDisaster;
+        disasters.addListener(listener(d -> DISASTER | (d.getId() & 0xFFFFFFFFL)));
+        victims.addListener(listener(v -> VICTIM | (v.getId() & 0xFFFFFFFFL)));
+        teams.addListener(listener(t -> TEAM | (t.getId() & 0xFFFFFFFFL)));
+        java.util.concurrent.Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "orphan-sweeper");
+            t.setDaemon(true);
+            return t;
+        }).scheduleWithFixedDelay(this::sweep, SWEEP_MILLIS, SWEEP_MILLIS, java.util.concurrent.TimeUnit.MILLISECONDS);
+    }
+
+    private <T> RepositoryListener<T> listener(java.util.function.ToLongFunction<T> change) {
+        return new RepositoryListener<T>() {
+            public void added(T item) { if (!rescan) changed.add(change.applyAsLong(item)); }
+            public void removed(T item) { if (!rescan) changed.add(change.applyAsLong(item)); }
+            public void replaced(T old, T item) { if (!rescan) changed.add(change.applyAsLong(item)); }
+            public void cleared() {
+                rescan = true;
+                changed.clear();
+            }
+        };
+    }
+
+    // Applies everything queued since the last sweep
+    public synchronized void sweep() {
+        if (rescan) {
+            rescan = false;
+            orphanVictims.clear();
+            orphanTeams.clear();
+            for (Victim v : victims.snapshot()) checkVictim(v.getId());
+            for (RescueTeam t : teams.snapshot()) checkTeam(t.getId());
+        }
+        for (Long change; (change = changed.poll()) != null; ) {
+            int id = (int) (long) change;
+            switch ((int) (change >>> 32)) {
+                case 1 -> checkVictim(id);
+                case 2 -> checkTeam(id);
+                default -> {
+                    for (Victim v : victimsByDisaster.get(id)) checkVictim(v.getId());
+                    for (RescueTeam t : teamsByDisaster.get(id)) checkTeam(t.getId());
+                }
+            }
+        }
+    }
+
+    private void checkVictim(int id) {
+        Victim v = victims.get(id);
+        if (v != null && !disasters.contains(v.getDisasterId())) orphanVictims.add(id);
+        else orphanVictims.remove(id);
+    }
+
+    private void checkTeam(int id) {
+        RescueTeam t = teams.get(id);
+        if (t != null && !disasters.contains(t.getAssignedDisasterId())) orphanTeams.add(id);
+        else orphanTeams.remove(id);
+    }
+
+    // Ids, ascending
+    public List<Integer> victims() {
+        sweep();
+        List<Integer> ids = new ArrayList<>(orphanVictims);
+        Collections.sort(ids);
+        return ids;
+    }
+
+    public List<Integer> teams() {
+        sweep();
+        List<Integer> ids = new ArrayList<>(orphanTeams);
+        Collections.sort(ids);
+        return ids;
+    }
+}
+
+// Open-addressing int -> int hash map (no boxing of keys or values)
+class IntIntMap {
+    private static final int FREE_KEY = 0;
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+    private boolean hasFreeKey;
+    private int freeValue;
+
+    public IntIntMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[cap];
+        values = new int[cap];
+        mask = cap - 1;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public int size() { return size; }
+
+    public boolean containsKey(int key) {
+        return key == FREE_KEY ? hasFreeKey : indexOf(key) >= 0;
+    }
+
+    private int indexOf(int key) {
+        int i = mix(key) & mask;
+        while (keys[i] != FREE_KEY) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int get(int key, int missing) {
+        if (key == FREE_KEY) return hasFreeKey ? freeValue : missing;
+        int i = indexOf(key);
+        return i < 0 ? missing : values[i];
+    }
+
+    public void put(int key, int value) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) size++;
+            hasFreeKey = true;
+            freeValue = value;
+            return;
+        }
+        int i = mix(key) & mask;
+        while (keys[i] != FREE_KEY) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > (mask + 1) * 3 / 4) rehash(keys.length << 1);
+    }
+
+    public int remove(int key, int missing) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) return missing;
+            hasFreeKey = false;
+            size--;
+            return freeValue;
+        }
+        int i = indexOf(key);
+        if (i < 0) return missing;
+        int old = values[i];
+        size--;
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int gap = i;
+        int j = (i + 1) & mask;
+        while (keys[j] != FREE_KEY) {
+            int home = mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+            j = (j + 1) & mask;
+        }
+        keys[gap] = FREE_KEY;
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        size = 0;
+        hasFreeKey = false;
+    }
+
+    // Adds delta to the value under key (missing counts as 0); drops the key when it reaches 0
+    public void increment(int key, int delta) {
+        int v = get(key, 0) + delta;
+        if (v == 0) remove(key, 0);
+        else put(key, v);
+    }
+
+    public interface Visitor {
+        void visit(int key, int value);
+    }
+
+    public void forEach(Visitor visitor) {
+        if (hasFreeKey) visitor.visit(FREE_KEY, freeValue);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY) visitor.visit(keys[i], values[i]);
+        }
+    }
+
+    // Entries as "{k1=v1, k2=v2}" in ascending key order
+    @Override
+    public String toString() {
+        int[] sorted = new int[size];
+        int[] n = { 0 };
+        forEach((k, v) -> sorted[n[0]++] = k);
+        Arrays.sort(sorted);
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < sorted.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(sorted[i]).append('=').append(get(sorted[i], 0));
+        }
+        return sb.append('}').toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof IntIntMap other) || other.size != size) return false;
+        boolean[] same = { true };
+        forEach((k, v) -> same[0] &= other.containsKey(k) && other.get(k, 0) == v);
+        return same[0];
+    }
+
+    @Override
+    public int hashCode() {
+        int[] h = { 0 };
+        forEach((k, v) -> h[0] += k ^ v);
+        return h[0];
+    }
+
+    private void rehash(int newCap) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[newCap];
+        values = new int[newCap];
+        mask = newCap - 1;
+        size = hasFreeKey ? 1 : 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE_KEY) put(oldKeys[i], oldValues[i]);
+        }
+    }
+}
+
+// Open-addressing int -> Object hash map
+class IntMap<V> {
+    private static final int FREE_KEY = 0;
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+    private V freeValue; // value stored under key 0, null if absent
+
+    public IntMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[cap];
+        values = new Object[cap];
+        mask = cap - 1;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public int size() { return size; }
+
+    private int indexOf(int key) {
+        int i = mix(key) & mask;
+        while (keys[i] != FREE_KEY) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (key == FREE_KEY) return freeValue;
+        int i = indexOf(key);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    public V computeIfAbsent(int key, java.util.function.IntFunction<V> factory) {
+        V v = get(key);
+        if (v == null) {
+            v = factory.apply(key);
+            put(key, v);
+        }
+        return v;
+    }
+
+    public void put(int key, V value) {
+        if (key == FREE_KEY) {
+            if (freeValue == null) size++;
+            freeValue = value;
+            return;
+        }
+        int i = mix(key) & mask;
+        while (keys[i] != FREE_KEY) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > (mask + 1) * 3 / 4) rehash(keys.length << 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        if (key == FREE_KEY) {
+            V old = freeValue;
+            if (old != null) size--;
+            freeValue = null;
+            return old;
+        }
+        int i = indexOf(key);
+        if (i < 0) return null;
+        V old = (V) values[i];
+        size--;
+        int gap = i;
+        int j = (i + 1) & mask;
+        while (keys[j] != FREE_KEY) {
+            int home = mix(keys[j]) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+            j = (j + 1) & mask;
+        }
+        keys[gap] = FREE_KEY;
+        values[gap] = null;
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        Arrays.fill(values, null);
+        size = 0;
+        freeValue = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(java.util.function.BiConsumer<Integer, V> action) {
+        if (freeValue != null) action.accept(FREE_KEY, freeValue);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY) action.accept(keys[i], (V) values[i]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void rehash(int newCap) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[newCap];
+        values = new Object[newCap];
+        mask = newCap - 1;
+        size = freeValue != null ? 1 : 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE_KEY) put(oldKeys[i], (V) oldValues[i]);
+        }
+    }
+}
+
+// Insertion-ordered set of ints with O(1) add/remove/contains
+class OrderedIntSet {
+    private static final int REMOVED = Integer.MIN_VALUE;
+    private final IntIntMap slots = new IntIntMap(4);
+    private int[] items = new int[4];
+    private int end;
+
+    public int size() { return slots.size(); }
+    public boolean isEmpty() { return slots.size() == 0; }
+    public boolean contains(int value) { return slots.containsKey(value); }
+
+    public boolean add(int value) {
+        if (slots.containsKey(value)) return false;
+        if (end == items.length) {
+            if (slots.size() < end / 2) compact();
+            else items = Arrays.copyOf(items, end << 1);
+        }
+        items[end] = value;
+        slots.put(value, end++);
+        return true;
+    }
+
+    public boolean remove(int value) {
+        int slot = slots.remove(value, -1);
+        if (slot < 0) return false;
+        items[slot] = REMOVED;
+        return true;
+    }
+
+    private void compact() {
+        int live = 0;
+        for (int i = 0; i < end; i++) {
+            if (items[i] == REMOVED) continue;
+            items[live] = items[i];
+            slots.put(items[live], live++);
+        }
+        end = live;
+    }
+
+    public void forEach(java.util.function.IntConsumer action) {
+        for (int i = 0; i < end; i++) {
+            if (items[i] != REMOVED) action.accept(items[i]);
+        }
+    }
+    // Stops at the first value action rejects; false if it stopped early
+    public boolean forEachWhile(java.util.function.IntPredicate action) {
+        for (int i = 0; i < end; i++) {
+            if (items[i] != REMOVED && !action.test(items[i])) return false;
+        }
+        return true;
+    }
+}
+
+// Receives every change made to a Repository; a replaced record arrives as removed(old) + added(new)
+interface RepositoryListener<T> {
+    void added(T item);
+    void removed(T item);
+    default void replaced(T old, T item) {
+        removed(old);
+        added(item);
+    }
+    default void cleared() {}
+    // A stored record brought into memory, or dropped from it, without being created or deleted
+    // (partitioned storage). Indexes treat these like adds and removes; counters and the journal ignore them.
+    default void loaded(T item) { added(item); }
+    default void unloaded(T item) { removed(item); }
+}
+
+// Secondary index from a foreign key (e.g. disasterId) to the ids of the records that reference it
+class ForeignKeyIndex<T> implements RepositoryListener<T> {
+    private final Repository<T> repository;
+    private final java.util.function.ToIntFunction<T> keyOf;
+    private final java.util.function.ToIntFunction<T> idOf;
+    private final IntMap<OrderedIntSet> groups = new IntMap<>(16);
+
+    public ForeignKeyIndex(Repository<T> repository, java.util.function.ToIntFunction<T> keyOf, java.util.function.ToIntFunction<T> idOf) {
+        this.repository = repository;
+        this.keyOf = keyOf;
+        this.idOf = idOf;
+        repository.addListener(this);
+    }
+
+    @Override
+    public void added(T item) {
+        groups.computeIfAbsent(keyOf.applyAsInt(item), k -> new OrderedIntSet()).add(idOf.applyAsInt(item));
+    }
+
+    @Override
+    public void removed(T item) {
+        int key = keyOf.applyAsInt(item);
+        OrderedIntSet ids = groups.get(key);
+        if (ids != null && ids.remove(idOf.applyAsInt(item)) && ids.isEmpty()) groups.remove(key);
+    }
+
+    @Override
+    public void cleared() {
+        groups.clear();
+    }
+
+    // Reads go through the repository lock, which also guards the listener callbacks above
+    public int count(int key) {
+        return repository.read(() -> {
+            OrderedIntSet ids = groups.get(key);
+            return ids == null ? 0 : ids.size();
+        });
+    }
+
+    // Records referencing key, in insertion order
+    public List<T> get(int key) {
+        return repository.read(() -> {
+            OrderedIntSet ids = groups.get(key);
+            if (ids == null) return Collections.<T>emptyList();
+            List<T> result = new ArrayList<>(ids.size());
+            ids.forEach(id -> result.add(repository.lookup(id)));
+            return result;
+        });
+    }
+}
+
+// Inverted index over the words of some text fields of a repository's records, kept current as a
+// listener. Postings are found by hash; a sorted term dictionary serves prefix lookups, and every term is
+// also filed under each of its one-letter deletions so terms within one edit of a query word are found
+// without a scan. A query is driven from its rarest word: records matching every word come first, ranked
+// by the summed idf of the matched terms (weighted down for prefix and fuzzy matches), and collection
+// stops once limit records are found, so frequent words cost no more than rare ones.
+class TextIndex<T> implements RepositoryListener<T> {
+    static final int MAX_EXPANSIONS = Integer.getInteger("dm.search.maxExpansions", 256);
+    static final int MAX_FUZZY_LENGTH = Integer.getInteger("dm.search.maxFuzzyLength", 32);
+    private static final double PREFIX_WEIGHT = 0.6;
+    private static final double FUZZY_WEIGHT = 0.4;
+
+    private final Repository<T> repository;
+    private final java.util.function.ToIntFunction<T> idOf;
+    private final List<java.util.function.Function<T, String>> fields;
+    private final Map<String, OrderedIntSet> postings = new HashMap<>();
+    private final TreeSet<String> dictionary = new TreeSet<>();
+    private final Map<String, Set<String>> deletions = new HashMap<>();
+    // Callbacks run under the repository's write lock; queries only take this lock, never both at once
+    private final java.util.concurrent.locks.ReentrantReadWriteLock lock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+    private int documents;
+
+    public TextIndex(Repository<T> repository, java.util.function.ToIntFunction<T> idOf, List<java.util.function.Function<T, String>> fields) {
+        this.repository = repository;
+        this.idOf = idOf;
+        this.fields = fields;
+        repository.addListener(this);
+    }
+
+    // Lowercased runs of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) start = i;
+            else if (!word && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private Set<String> termsOf(T item) {
+        Set<String> set = new HashSet<>();
+        for (java.util.function.Function<T, String> field : fields) set.addAll(tokenize(field.apply(item)));
+        return set;
+    }
+
+    @Override
+    public void added(T item) {
+        int id = idOf.applyAsInt(item);
+        Set<String> terms = termsOf(item);
+        lock.writeLock().lock();
+        try {
+            documents++;
+            for (String term : terms) {
+                OrderedIntSet ids = postings.get(term);
+                if (ids == null) {
+                    postings.put(term, ids = new OrderedIntSet());
+                    dictionary.add(term);
+                    for (String key : deletionKeys(term)) deletions.computeIfAbsent(key, k -> new HashSet<>(2)).add(term);
+                }
+                ids.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removed(T item) {
+        int id = idOf.applyAsInt(item);
+        Set<String> terms = termsOf(item);
+        lock.writeLock().lock();
+        try {
+            documents--;
+            for (String term : terms) {
+                OrderedIntSet ids = postings.get(term);
+                if (ids == null || !ids.remove(id) || !ids.isEmpty()) continue;
+                postings.remove(term);
+                dictionary.remove(term);
+                for (String key : deletionKeys(term)) {
+                    Set<String> variants = deletions.get(key);
+                    if (variants != null && variants.remove(term) && variants.isEmpty()) deletions.remove(key);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void cleared() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            dictionary.clear();
+            deletions.clear();
+            documents = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The term itself plus every string made by deleting one character from it. Keys grow with the square
+    // of the length, so terms longer than MAX_FUZZY_LENGTH are only found exactly or by prefix.
+    private static List<String> deletionKeys(String term) {
+        if (term.length() > MAX_FUZZY_LENGTH) return List.of(term);
+        List<String> keys = new ArrayList<>(term.length() + 1);
+        keys.add(term);
+        for (int i = 0; i < term.length(); i++) keys.add(term.substring(0, i) + term.substring(i + 1));
+        return keys;
+    }
+
+    // Levenshtein distance of at most one (one substitution, insertion or deletion)
+    private static boolean withinOneEdit(String a, String b) {
+        if (Math.abs(a.length() - b.length()) > 1) return false;
+        if (a.length() > b.length()) {
+            String t = a;
+            a = b;
+            b = t;
+        }
+        int i = 0;
+        while (i < a.length() && a.charAt(i) == b.charAt(i)) i++;
+        if (a.length() == b.length()) return i == a.length() || a.regionMatches(i + 1, b, i + 1, a.length() - i - 1);
+        return a.regionMatches(i, b, i + 1, a.length() - i);
+    }
+
+    // One dictionary term a query word matched, with its weight (match quality times idf)
+    private record Expansion(OrderedIntSet ids, double weight) {}
+
+    private record Hit(int id, int words, double score) {}
+
+    // Best-ranked records for the query, at most limit of them
+    public List<T> search(String query, int limit) {
+        List<Hit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            List<List<Expansion>> expanded = new ArrayList<>();
+            for (String word : new LinkedHashSet<>(tokenize(query))) {
+                List<Expansion> e = expand(word);
+                if (!e.isEmpty()) expanded.add(e);
+            }
+            expanded.sort(Comparator.comparingLong(TextIndex::candidates));
+            IntIntMap seen = new IntIntMap(64);
+            if (!expanded.isEmpty()) collect(expanded.get(0), expanded, expanded.size(), seen, hits, limit);
+            // Short of limit: records matching only some of the words
+            for (int w = expanded.size() == 1 ? 1 : 0; w < expanded.size() && hits.size() < limit; w++) {
+                collect(expanded.get(w), expanded, 1, seen, hits, limit);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(Comparator.comparingInt(Hit::words).reversed()
+            .thenComparing(Comparator.comparingDouble(Hit::score).reversed())
+            .thenComparingInt(Hit::id));
+        List<T> result = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            T item = repository.get(hit.id());
+            if (item != null) result.add(item);   // removed since the index was read
+        }
+        return result;
+    }
+
+    // Adds records from word's postings that match at least minWords of the query words, until limit
+    private static void collect(List<Expansion> word, List<List<Expansion>> expanded, int minWords, IntIntMap seen, List<Hit> hits, int limit) {
+        for (Expansion e : word) {
+            boolean more = e.ids().forEachWhile(id -> {
+                if (seen.containsKey(id)) return true;
+                Hit hit = score(id, expanded);
+                if (hit.words() < minWords) return true;
+                seen.put(id, 1);
+                hits.add(hit);
+                return hits.size() < limit;
+            });
+            if (!more) return;
+        }
+    }
+
+    private static long candidates(List<Expansion> expansions) {
+        long n = 0;
+        for (Expansion e : expansions) n += e.ids().size();
+        return n;
+    }
+
+    // Each query word contributes its best matching term
+    private static Hit score(int id, List<List<Expansion>> expanded) {
+        int words = 0;
+        double score = 0;
+        for (List<Expansion> word : expanded) {
+            for (Expansion e : word) {   // sorted by weight, so the first hit is the best
+                if (e.ids().contains(id)) {
+                    words++;
+                    score += e.weight();
+                    break;
+                }
+            }
+        }
+        return new Hit(id, words, score);
+    }
+
+    // Dictionary terms matching word: exact, by prefix (at most MAX_EXPANSIONS) or within one edit; best first
+    private List<Expansion> expand(String word) {
+        Map<String, Double> quality = new HashMap<>();
+        int n = 0;
+        for (String term : dictionary.subSet(word, true, word + Character.MAX_VALUE, false)) {
+            quality.put(term, term.length() == word.length() ? 1.0 : PREFIX_WEIGHT);
+            if (++n == MAX_EXPANSIONS) break;
+        }
+        if (word.length() >= 3) {
+            for (String key : deletionKeys(word)) {
+                Set<String> candidates = deletions.get(key);
+                if (candidates == null) continue;
+                for (String term : candidates) {
+                    if (withinOneEdit(word, term)) quality.putIfAbsent(term, FUZZY_WEIGHT);
+                }
+            }
+        }
+        List<Expansion> result = new ArrayList<>(quality.size());
+        quality.forEach((term, q) -> {
+            OrderedIntSet ids = postings.get(term);
+            result.add(new Expansion(ids, q * Math.log(1 + (double) documents / ids.size())));
+        });
+        result.sort(Comparator.comparingDouble(Expansion::weight).reversed());
+        return result;
+    }
+}
+
+// Grid index of the records that have coordinates, kept current as a repository listener. The globe is
+// cut into cells of CELL_DEGREES; a radius query visits only the cells overlapping the circle's bounding
+// box, and a nearest query visits rings of cells outward from the query point until no unvisited cell can
+// hold anything closer than the k-th best so far. Cells hold the records themselves, so filters (e.g. a
+// team's specialty) never reach back into the repository.
+class GeoIndex<T> implements RepositoryListener<T> {
+    static final double CELL_DEGREES = Double.parseDouble(System.getProperty("dm.geo.cellDegrees", "0.25"));
+    static final double EARTH_KM = 6371.0088;
+    private static final int LAT_CELLS = (int) Math.ceil(180 / CELL_DEGREES);
+    private static final int LON_CELLS = (int) Math.ceil(360 / CELL_DEGREES);
+
+    record Near<T>(T item, double km) {}
+
+    private static final class Cell {
+        Object[] items = new Object[4];
+        double[] lats = new double[4];
+        double[] lons = new double[4];
+        int size;
+
+        void add(Object item, double lat, double lon) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                lats = Arrays.copyOf(lats, size * 2);
+                lons = Arrays.copyOf(lons, size * 2);
+            }
+            items[size] = item;
+            lats[size] = lat;
+            lons[size++] = lon;
+        }
+
+        boolean remove(Object item) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] != item) continue;
+                size--;
+                items[i] = items[size];
+                lats[i] = lats[size];
+                lons[i] = lons[size];
+                items[size] = null;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final java.util.function.ToDoubleFunction<T> latOf;
+    private final java.util.function.ToDoubleFunction<T> lonOf;
+    private final Map<Long, Cell> cells = new HashMap<>();
+    private final java.util.concurrent.locks.ReentrantReadWriteLock lock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+
+    public GeoIndex(Repository<T> repository, java.util.function.ToDoubleFunction<T> latOf, java.util.function.ToDoubleFunction<T> lonOf) {
+        this.latOf = latOf;
+        this.lonOf = lonOf;
+        repository.addListener(this);
+    }
+
+    private static int row(double lat) { return Math.min(LAT_CELLS - 1, (int) ((lat + 90) / CELL_DEGREES)); }
+    private static int column(double lon) { return Math.floorMod((int) Math.floor((lon + 180) / CELL_DEGREES), LON_CELLS); }
+    private static long key(int row, int column) { return (long) row * LON_CELLS + column; }
+
+    @Override
+    public void added(T item) {
+        double lat = latOf.applyAsDouble(item);
+        if (Double.isNaN(lat)) return;
+        double lon = lonOf.applyAsDouble(item);
+        lock.writeLock().lock();
+        try {
+            cells.computeIfAbsent(key(row(lat), column(lon)), k -> new Cell()).add(item, lat, lon);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removed(T item) {
+        double lat = latOf.applyAsDouble(item);
+        if (Double.isNaN(lat)) return;
+        long key = key(row(lat), column(lonOf.applyAsDouble(item)));
+        lock.writeLock().lock();
+        try {
+            Cell cell = cells.get(key);
+            if (cell != null && cell.remove(item) && cell.size == 0) cells.remove(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void cleared() {
+        lock.writeLock().lock();
+        try {
+            cells.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Great-circle distance (haversine)
+    static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    // Records within km of the point that pass filter, nearest first
+    public List<Near<T>> within(double lat, double lon, double km, java.util.function.Predicate<T> filter) {
+        List<Near<T>> result = new ArrayList<>();
+        double dLat = Math.toDegrees(km / EARTH_KM);
+        int south = row(Math.max(-90, lat - dLat));
+        int north = row(Math.min(90, lat + dLat));
+        double maxLat = Math.min(90, Math.abs(lat) + dLat);
+        double dLon = maxLat >= 90 ? 180 : Math.toDegrees(km / (EARTH_KM * Math.cos(Math.toRadians(maxLat))));
+        int width = dLon >= 180 ? LON_CELLS : Math.min(LON_CELLS, 2 * (int) Math.ceil(dLon / CELL_DEGREES) + 1);
+        int west = width == LON_CELLS ? 0 : column(lon - dLon);
+        lock.readLock().lock();
+        try {
+            for (int y = south; y <= north; y++) {
+                for (int i = 0; i < width; i++) {
+                    visit(cells.get(key(y, (west + i) % LON_CELLS)), lat, lon, filter, near -> {
+                        if (near.km() <= km) result.add(near);
+                    });
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(Comparator.comparingDouble(Near::km));
+        return result;
+    }
+
+    // The k records nearest the point that pass filter, nearest first
+    public List<Near<T>> nearest(double lat, double lon, int k, java.util.function.Predicate<T> filter) {
+        PriorityQueue<Near<T>> best = new PriorityQueue<>(Comparator.comparingDouble((Near<T> n) -> n.km()).reversed());
+        java.util.function.Consumer<Near<T>> offer = near -> {
+            if (best.size() < k) best.add(near);
+            else if (near.km() < best.peek().km()) {
+                best.poll();
+                best.add(near);
+            }
+        };
+        int cy = row(lat);
+        int cx = column(lon);
+        lock.readLock().lock();
+        try {
+            for (int r = 0; k > 0; r++) {
+                if (best.size() == k && best.peek().km() <= outsideKm(lat, lon, cy, cx, r)) break;
+                if (8L * r >= cells.size() || 2 * r + 1 >= LON_CELLS) {
+                    // The ring has more cells than there are occupied cells: visit the rest directly
+                    for (Map.Entry<Long, Cell> e : cells.entrySet()) {
+                        int y = (int) (e.getKey() / LON_CELLS);
+                        int dx = Math.abs((int) (e.getKey() % LON_CELLS) - cx);
+                        if (Math.max(Math.abs(y - cy), Math.min(dx, LON_CELLS - dx)) >= r) visit(e.getValue(), lat, lon, filter, offer);
+                    }
+                    break;
+                }
+                for (int dy = -r; dy <= r; dy++) {
+                    int y = cy + dy;
+                    if (y < 0 || y >= LAT_CELLS) continue;
+                    int step = Math.abs(dy) == r ? 1 : 2 * r;   // inner rows: only the two ends are on the ring
+                    for (int dx = -r; dx <= r; dx += Math.max(1, step)) {
+                        visit(cells.get(key(y, Math.floorMod(cx + dx, LON_CELLS))), lat, lon, filter, offer);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Near<T>> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(Near::km));
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void visit(Cell cell, double lat, double lon, java.util.function.Predicate<T> filter, java.util.function.Consumer<Near<T>> sink) {
+        if (cell == null) return;
+        for (int i = 0; i < cell.size; i++) {
+            T item = (T) cell.items[i];
+            if (filter.test(item)) sink.accept(new Near<>(item, distanceKm(lat, lon, cell.lats[i], cell.lons[i])));
+        }
+    }
+
+    // Lower bound on the distance from the point to anything outside rings 0..r-1 around its cell
+    private static double outsideKm(double lat, double lon, int cy, int cx, int r) {
+        double bound = Double.POSITIVE_INFINITY;
+        double south = (cy - r + 1) * CELL_DEGREES - 90;
+        double north = (cy + r) * CELL_DEGREES - 90;
+        if (south > -90) bound = Math.min(bound, Math.toRadians(lat - south) * EARTH_KM);
+        if (north < 90) bound = Math.min(bound, Math.toRadians(north - lat) * EARTH_KM);
+        if (2 * r - 1 < LON_CELLS) {
+            double west = (cx - r + 1) * CELL_DEGREES - 180;
+            double east = (cx + r) * CELL_DEGREES - 180;
+            // Distance to the great circle through a meridian dLon away
+            for (double d : new double[] {lon - west, east - lon}) {
+                bound = Math.min(bound, EARTH_KM * Math.asin(Math.sin(Math.toRadians(Math.min(90, d))) * Math.cos(Math.toRadians(lat))));
+            }
+        }
+        return Math.max(0, bound);
+    }
+}
+
+// Ordered index over an int attribute, kept current as a repository listener. Keys are composite longs,
+// attribute in the high half and id in the low half, so equal attributes stay distinct and come out in id
+// order; range, top-k and ordered listings walk the tree instead of sorting, O(log n + k). Only keys are
+// held; records are looked up by id, so a column store's views are not kept alive.
+class OrderedIndex<T> implements RepositoryListener<T> {
+    static final int NONE = Integer.MIN_VALUE;    // attribute value for records left out of the index
+
+    private final Repository<T> repository;
+    private final java.util.function.ToIntFunction<T> keyOf;
+    private final java.util.function.ToIntFunction<T> idOf;
+    private final TreeSet<Long> tree = new TreeSet<>();
+    private final java.util.concurrent.locks.ReentrantReadWriteLock lock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+
+    public OrderedIndex(Repository<T> repository, java.util.function.ToIntFunction<T> keyOf, java.util.function.ToIntFunction<T> idOf) {
+        this.repository = repository;
+        this.keyOf = keyOf;
+        this.idOf = idOf;
+        repository.addListener(this);
+    }
+
+    private static long key(int value, int id) {
+        return (long) value << 32 | (id & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public void added(T item) {
+        int value = keyOf.applyAsInt(item);
+        if (value == NONE) return;
+        lock.writeLock().lock();
+        try {
+            tree.add(key(value, idOf.applyAsInt(item)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removed(T item) {
+        int value = keyOf.applyAsInt(item);
+        if (value == NONE) return;
+        lock.writeLock().lock();
+        try {
+            tree.remove(key(value, idOf.applyAsInt(item)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void cleared() {
+        lock.writeLock().lock();
+        try {
+            tree.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return tree.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Up to limit records with from <= attribute <= to, ascending or descending
+    public List<T> range(int from, int to, boolean descending, int limit) {
+        List<T> result = new ArrayList<>();
+        if (from > to || limit <= 0) return result;
+        int[] ids;
+        int n = 0;
+        lock.readLock().lock();
+        try {
+            NavigableSet<Long> range = tree.subSet(key(from, 0), true, key(to, -1), true);
+            ids = new int[Math.min(limit, 64)];
+            for (long key : descending ? range.descendingSet() : range) {
+                if (n == limit) break;
+                if (n == ids.length) ids = Arrays.copyOf(ids, (int) Math.min(limit, 2L * n));
+                ids[n++] = (int) key;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; i < n; i++) {
+            T item = repository.get(ids[i]);
+            if (item != null) result.add(item);
+        }
+        return result;
+    }
+
+    // The limit records with the highest attribute, highest first
+    public List<T> top(int limit) {
+        return range(NONE + 1, Integer.MAX_VALUE, true, limit);
+    }
+
+    // Every indexed record in attribute order
+    public List<T> all(boolean descending) {
+        return range(NONE + 1, Integer.MAX_VALUE, descending, Integer.MAX_VALUE);
+    }
+}
+
+// One user's undo/redo history. A command holds journal-format records (see Journal.line): redo re-applies
+// the after-images and undo the before-images of everything the command changed, so both directions go
+// through App.applyJournalRecord and are journaled like any other change. Commands live in a fixed-capacity
+// ring; the oldest are dropped once it holds CAPACITY commands or their estimated size passes MAX_BYTES.
+class UndoHistory {
+    static final int CAPACITY = Integer.getInteger("dm.undo.capacity", 100);
+    static final long MAX_BYTES = Long.getLong("dm.undo.maxBytes", 1L << 20);
+
+    record Command(String label, String[] undo, String[] redo) {
+        // Estimated retained heap: record, arrays and compact (Latin-1) strings with their headers
+        long bytes() {
+            long bytes = 16 + 40 + label.length() + 32 + 4L * (undo.length + redo.length);
+            for (String s : undo) bytes += 40 + s.length();
+            for (String s : redo) bytes += 40 + s.length();
+            return bytes;
+        }
+    }
+
+    private final Command[] ring = new Command[CAPACITY];
+    private int first;   // slot of the oldest command
+    private int size;
+    private int done;    // the first done commands can be undone, the rest redone
+    private long bytes;
+
+    private Command at(int i) { return ring[(first + i) % CAPACITY]; }
+
+    // Records a new command; whatever could be redone is discarded
+    public synchronized void record(Command command) {
+        while (size > done) drop(--size);
+        long b = command.bytes();
+        while (size > 0 && (size == CAPACITY || bytes + b > MAX_BYTES)) {
+            drop(0);
+            first = (first + 1) % CAPACITY;
+            size--;
+            done--;
+        }
+        ring[(first + size) % CAPACITY] = command;
+        size++;
+        done = size;
+        bytes += b;
+    }
+
+    private void drop(int i) {
+        bytes -= at(i).bytes();
+        ring[(first + i) % CAPACITY] = null;
+    }
+
+    public synchronized Command nextUndo() { return done > 0 ? at(done - 1) : null; }
+    public synchronized Command nextRedo() { return done < size ? at(done) : null; }
+    public synchronized void undone() { done--; }
+    public synchronized void redone() { done++; }
+    public synchronized long bytes() { return bytes; }
+
+    // Persistence for dm.undo.persist: "H\t<user>\t<redoable count>", then per command "C\t<label>" and its "u\t"/"r\t" records
+    synchronized void write(String user, Writer out) throws IOException {
+        out.write("H\t" + user + "\t" + (size - done) + "\n");
+        for (int i = 0; i < size; i++) {
+            Command c = at(i);
+            out.write("C\t" + c.label() + "\n");
+            for (String s : c.undo()) out.write("u\t" + s + "\n");
+            for (String s : c.redo()) out.write("r\t" + s + "\n");
+        }
+    }
+
+    static void save(Map<String, UndoHistory> histories, String file) throws IOException {
+        File tmp = new File(file + ".tmp");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), java.nio.charset.StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, UndoHistory> e : histories.entrySet()) e.getValue().write(e.getKey(), out);
+        }
+        java.nio.file.Files.move(tmp.toPath(), new File(file).toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+            java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static void load(Map<String, UndoHistory> histories, String file) throws IOException {
+        if (!new File(file).exists()) return;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), java.nio.charset.StandardCharsets.UTF_8))) {
+            UndoHistory history = null;
+            int redoable = 0;
+            String label = null;
+            List<String> undo = new ArrayList<>(), redo = new ArrayList<>();
+            for (String line = in.readLine(); ; line = in.readLine()) {
+                if (label != null && (line == null || line.startsWith("C\t") || line.startsWith("H\t"))) {
+                    history.record(new Command(label, undo.toArray(new String[0]), redo.toArray(new String[0])));
+                    label = null;
+                    undo.clear();
+                    redo.clear();
+                }
+                if (history != null && (line == null || line.startsWith("H\t"))) {
+                    history.done = history.size - Math.min(history.size, redoable);
+                }
+                if (line == null) break;
+                if (line.startsWith("H\t")) {
+                    int tab = line.lastIndexOf('\t');
+                    history = new UndoHistory();
+                    histories.put(line.substring(2, tab), history);
+                    redoable = Integer.parseInt(line.substring(tab + 1));
+                } else if (line.startsWith("C\t")) {
+                    label = line.substring(2);
+                } else if (line.startsWith("u\t")) {
+                    undo.add(line.substring(2));
+                } else if (line.startsWith("r\t")) {
+                    redo.add(line.substring(2));
+                }
+            }
+        }
+    }
+}
+
+// Where a Repository keeps its records, by slot. ObjectSlots holds the records themselves; a column
+// store (VictimColumns) keeps their fields in arrays and hands out read-only views. Called under the
+// repository's write lock, or its read/optimistic lock for get and occupied.
+interface SlotStore<T> {
+    int capacity();
+    void grow(int capacity);
+    boolean occupied(int slot);
+    T get(int slot);               // null for an empty slot
+    void set(int slot, T item);
+    void clear(int slot);
+    void move(int from, int to);   // to is empty; from is left empty
+    void reset();
+}
+
+class ObjectSlots<T> implements SlotStore<T> {
+    private Object[] items = new Object[16];
+
+    public int capacity() { return items.length; }
+    public void grow(int capacity) { items = Arrays.copyOf(items, capacity); }
+    public boolean occupied(int slot) { return items[slot] != null; }
+    @SuppressWarnings("unchecked")
+    public T get(int slot) { return (T) items[slot]; }
+    public void set(int slot, T item) { items[slot] = item; }
+    public void clear(int slot) { items[slot] = null; }
+    public void move(int from, int to) {
+        items[to] = items[from];
+        items[from] = null;
+    }
+    public void reset() { items = new Object[16]; }
+}
+
+// Column store for victims (dm.victims.store=columnar): id, age, disaster id and the injury level's
+// StringDictionary code in int arrays, name and contact as length-prefixed UTF-8 in one byte arena. get() hands
+// out a flyweight Victim over the slot's values. The arena is append-only and, once mostly garbage, is
+// rewritten into a new array, so a view never changes under its holder.
+class VictimColumns implements SlotStore<Victim> {
+    private int[] ids = new int[16];
+    private int[] ages = new int[16];
+    private int[] disasterIds = new int[16];
+    private int[] injuries = new int[16];   // injury level code + 1; 0 marks an empty slot
+    private int[] names = new int[16];      // arena offsets
+    private int[] contacts = new int[16];
+    private byte[] arena = new byte[1 << 12];
+    private int arenaEnd;
+    private int deadBytes;
+
+    // Read-only victim over one slot's values; name and contact are decoded on demand
+    private static final class View extends Victim {
+        private final byte[] arena;
+        private final int name;
+        private final int contact;
+
+        View(int id, int age, int disasterId, int injuryLevel, byte[] arena, int name, int contact) {
+            super(id, null, age, null, injuryLevel, disasterId);
+            this.arena = arena;
+            this.name = name;
+            this.contact = contact;
+        }
+
+        @Override public String getName() { return decode(arena, name); }
+        @Override public String getContact() { return decode(arena, contact); }
+    }
+
+    public int capacity() { return ids.length; }
+
+    public void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        disasterIds = Arrays.copyOf(disasterIds, capacity);
+        injuries = Arrays.copyOf(injuries, capacity);
+        names = Arrays.copyOf(names, capacity);
+        contacts = Arrays.copyOf(contacts, capacity);
+    }
+
+    public boolean occupied(int slot) { return injuries[slot] != 0; }
+
+    public Victim get(int slot) {
+        int injury = injuries[slot];
+        if (injury == 0) return null;
+        return new View(ids[slot], ages[slot], disasterIds[slot], injury - 1, arena, names[slot], contacts[slot]);
+    }
+
+    public void set(int slot, Victim v) {
+        if (deadBytes > arenaEnd / 2 && arenaEnd > 1 << 20) rewriteArena();
+        if (injuries[slot] != 0) release(slot);
+        ids[slot] = v.getId();
+        ages[slot] = v.getAge();
+        disasterIds[slot] = v.getDisasterId();
+        injuries[slot] = v.getInjuryCode() + 1;
+        names[slot] = append(v.getName());
+        contacts[slot] = append(v.getContact());
+    }
+
+    public void clear(int slot) {
+        release(slot);
+        injuries[slot] = 0;
+    }
+
+    public void move(int from, int to) {
+        ids[to] = ids[from];
+        ages[to] = ages[from];
+        disasterIds[to] = disasterIds[from];
+        injuries[to] = injuries[from];
+        names[to] = names[from];
+        contacts[to] = contacts[from];
+        injuries[from] = 0;
+    }
+
+    public void reset() {
+        ids = new int[16];
+        ages = new int[16];
+        disasterIds = new int[16];
+        injuries = new int[16];
+        names = new int[16];
+        contacts = new int[16];
+        arena = new byte[1 << 12];
+        arenaEnd = 0;
+        deadBytes = 0;
+    }
+
+    // Heap held by the columns and the arena, for footprint measurements
+    public long bytes() {
+        return 6L * (16 + 4L * ids.length) + 16 + arena.length;
+    }
+
+    private void release(int slot) {
+        deadBytes += recordLength(arena, names[slot]) + recordLength(arena, contacts[slot]);
+    }
+
+    private int append(String s) {
+        byte[] bytes = s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        long need = (long) arenaEnd + bytes.length + 5;
+        if (need > Integer.MAX_VALUE - 8) throw new IllegalStateException("victim string arena is full");
+        if (need > arena.length) arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(need, 2L * arena.length)));
+        int at = arenaEnd;
+        int n = bytes.length;
+        while (n >= 0x80) {
+            arena[arenaEnd++] = (byte) (n | 0x80);
+            n >>>= 7;
+        }
+        arena[arenaEnd++] = (byte) n;
+        System.arraycopy(bytes, 0, arena, arenaEnd, bytes.length);
+        arenaEnd += bytes.length;
+        return at;
+    }
+
+    // Copies the live strings into a fresh arena; views of the old one keep it alive until dropped
+    private void rewriteArena() {
+        byte[] old = arena;
+        arena = new byte[Math.max(1 << 12, arenaEnd - deadBytes + (arenaEnd >>> 3))];
+        arenaEnd = 0;
+        deadBytes = 0;
+        for (int slot = 0; slot < ids.length; slot++) {
+            if (injuries[slot] == 0) continue;
+            names[slot] = copy(old, names[slot]);
+            contacts[slot] = copy(old, contacts[slot]);
+        }
+    }
+
+    private int copy(byte[] from, int at) {
+        int length = recordLength(from, at);
+        System.arraycopy(from, at, arena, arenaEnd, length);
+        arenaEnd += length;
+        return arenaEnd - length;
+    }
+
+    // Length prefix plus payload
+    private static int recordLength(byte[] arena, int at) {
+        int n = 0, shift = 0, i = at;
+        byte b;
+        do {
+            b = arena[i++];
+            n |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return i - at + n;
+    }
+
+    private static String decode(byte[] arena, int at) {
+        int n = 0, shift = 0, i = at;
+        byte b;
+        do {
+            b = arena[i++];
+            n |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return new String(arena, i, n, java.nio.charset.StandardCharsets.UTF_8);
+    }
+}
+
+// Id-keyed repository: O(1) get/put/remove by primary key, iterates in insertion order.
+// Writes (and the listeners they notify) are serialized by a StampedLock; lookups are optimistic reads.
+// Iteration is unsynchronized: iterate a snapshot() or hold off writers (App.exclusive).
+class Repository<T> implements Iterable<T> {
+    private final java.util.function.ToIntFunction<T> idOf;
+    private final java.util.concurrent.locks.StampedLock lock = new java.util.concurrent.locks.StampedLock();
+    private final IntIntMap slots = new IntIntMap(16);
+    private final SlotStore<T> items;
+    private int end;     // next free slot in items
+    private int modCount;
+    private volatile long version;   // bumped by every write, including in-place replaces
+    private final List<RepositoryListener<T>> listeners = new ArrayList<>();
+
+    public Repository(java.util.function.ToIntFunction<T> idOf) {
+        this(idOf, new ObjectSlots<>());
+    }
+
+    public Repository(java.util.function.ToIntFunction<T> idOf, SlotStore<T> items) {
+        this.idOf = idOf;
+        this.items = items;
+    }
+
+    public void addListener(RepositoryListener<T> listener) {
+        long stamp = lock.writeLock();
+        try {
+            listeners.add(listener);
+            for (T item : this) listener.added(item);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public long version() { return version; }
+    public int size() { return read(slots::size); }
+    public boolean isEmpty() { return size() == 0; }
+    public boolean contains(int id) { return get(id) != null; }
+
+    public T get(int id) {
+        return read(() -> lookup(id));
+    }
+
+    // Caller holds the lock (or knows there are no concurrent writers)
+    T lookup(int id) {
+        int slot = slots.get(id, -1);
+        return slot < 0 ? null : items.get(slot);
+    }
+
+    // Optimistic read, retried under the read lock if a write got in the way
+    <R> R read(java.util.function.Supplier<R> reader) {
+        long stamp = lock.tryOptimisticRead();
+        R result = null;
+        try {
+            result = reader.get();
+        } catch (RuntimeException e) {
+            stamp = 0;   // torn read during a resize
+        }
+        if (stamp != 0 && lock.validate(stamp)) return result;
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Runs the reader under the read lock: no write, and so no listener, is in progress meanwhile
+    public <R> R locked(java.util.function.Supplier<R> reader) {
+        long stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Live records, copied out in insertion order
+    public List<T> snapshot() {
+        return locked(this::snapshotLocked);
+    }
+
+    // Caller holds the lock
+    @SuppressWarnings("unchecked")
+    List<T> snapshotLocked() {
+        Object[] copy = new Object[slots.size()];
+        int n = 0;
+        for (int i = 0; i < end; i++) {
+            if (items.occupied(i)) copy[n++] = items.get(i);
+        }
+        return (List<T>) Collections.unmodifiableList(Arrays.asList(copy));
+    }
+
+    // Inserts a new record or replaces the one with the same id in place; returns the replaced record
+    public T put(T item) {
+        long stamp = lock.writeLock();
+        try {
+            version++;
+            return putLocked(item);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private T putLocked(T item) {
+        int id = idOf.applyAsInt(item);
+        int slot = slots.get(id, -1);
+        if (slot >= 0) {
+            T old = items.get(slot);
+            items.set(slot, item);
+            for (RepositoryListener<T> l : listeners) l.replaced(old, item);
+            return old;
+        }
+        if (end == items.capacity()) {
+            if (slots.size() < end / 2) compact();
+            else items.grow(end << 1);
+        }
+        items.set(end, item);
+        slots.put(id, end++);
+        modCount++;
+        for (RepositoryListener<T> l : listeners) l.added(item);
+        return null;
+    }
+
+    public void putAll(Iterable<? extends T> data) {
+        long stamp = lock.writeLock();
+        try {
+            version++;
+            for (T item : data) putLocked(item);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public T remove(int id) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slots.remove(id, -1);
+            if (slot < 0) return null;
+            version++;
+            T old = items.get(slot);
+            items.clear(slot);
+            modCount++;
+            for (RepositoryListener<T> l : listeners) l.removed(old);
+            return old;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Brings stored records into memory (skipping ids already present, which are newer) without
+    // reporting them as added; see RepositoryListener.loaded
+    public void load(Iterable<? extends T> data) {
+        long stamp = lock.writeLock();
+        try {
+            version++;
+            for (T item : data) {
+                if (slots.containsKey(idOf.applyAsInt(item))) continue;
+                if (end == items.capacity()) {
+                    if (slots.size() < end / 2) compact();
+                    else items.grow(end << 1);
+                }
+                items.set(end, item);
+                slots.put(idOf.applyAsInt(item), end++);
+                modCount++;
+                for (RepositoryListener<T> l : listeners) l.loaded(item);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Drops records from memory that stay stored elsewhere; see RepositoryListener.unloaded
+    public void unload(Iterable<? extends T> data) {
+        long stamp = lock.writeLock();
+        try {
+            version++;
+            for (T item : data) {
+                int slot = slots.remove(idOf.applyAsInt(item), -1);
+                if (slot < 0) continue;
+                T old = items.get(slot);
+                items.clear(slot);
+                modCount++;
+                for (RepositoryListener<T> l : listeners) l.unloaded(old);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            version++;
+            slots.clear();
+            items.reset();
+            end = 0;
+            modCount++;
+            for (RepositoryListener<T> l : listeners) l.cleared();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Squeezes out removed slots, keeping insertion order
+    private void compact() {
+        int live = 0;
+        for (int i = 0; i < end; i++) {
+            if (!items.occupied(i)) continue;
+            if (live != i) items.move(i, live);
+            slots.put(idOf.applyAsInt(items.get(live)), live++);
+        }
+        end = live;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private final int expectedMod = modCount;
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < end && !items.occupied(from)) from++;
+                return from;
+            }
+
+            public boolean hasNext() { return next < end; }
+
+            public T next() {
+                if (modCount != expectedMod) throw new ConcurrentModificationException();
+                if (next >= end) throw new NoSuchElementException();
+                T item = items.get(next);
+                next = advance(next + 1);
+                return item;
+            }
+        };
+    }
+
+    public java.util.stream.Stream<T> stream() {
+        return java.util.stream.StreamSupport.stream(
+            Spliterators.spliterator(iterator(), size(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+}
+
+// Victims and teams split by disaster (dm.storage=partitioned). Each partition's records live in immutable
+// files, partitions/<disaster id>-<generation>.victims and .teams, and startup reads only the manifest: the
+// current generation of every partition and the home disaster of every stored victim and team. A partition
+// is read into the repositories the first time it is used (ensureLoaded); once the resident partitions
+// exceed dm.partitions.budgetBytes, trim() evicts clean ones least recently used first. Changed partitions
+// stay resident until the next journal compaction writes them as a new generation (capture), and the
+// journal covers them until then.
+class PartitionStore {
+    static final String DIR = "partitions";
+    static final String MANIFEST = DIR + File.separator + "manifest";
+    private static final int MAGIC = 0x444D504D;   // "DMPM"
+    private static final int RECORD_BYTES = 160;   // rough heap per resident record, indexes included
+    private static final int MISSING = Integer.MIN_VALUE;
+
+    private static final class Partition {
+        final int disasterId;
+        long generation;                 // files holding the stored records; 0 if nothing is stored
+        int storedVictims, storedTeams;
+        volatile boolean resident = true;
+        volatile boolean dirty;          // differs from its files
+        volatile boolean writing;        // captured, files not written yet
+        final java.util.concurrent.atomic.AtomicInteger records = new java.util.concurrent.atomic.AtomicInteger();   // resident
+
+        Partition(int disasterId) { this.disasterId = disasterId; }
+    }
+
+    private final Repository<Victim> victims;
+    private final Repository<RescueTeam> teams;
+    private final ForeignKeyIndex<Victim> victimsByDisaster;
+    private final ForeignKeyIndex<RescueTeam> teamsByDisaster;
+    private final long budgetBytes;
+    private final java.util.concurrent.ConcurrentHashMap<Integer, Partition> partitions = new java.util.concurrent.ConcurrentHashMap<>();
+    private final LinkedHashMap<Integer, Partition> recent = new LinkedHashMap<>(16, 0.75f, true);   // resident, LRU first
+    // Home disaster of every victim and team, stored or resident; guarded by the repository locks
+    private final IntIntMap victimHome = new IntIntMap(16);
+    private final IntIntMap teamHome = new IntIntMap(16);
+    private final IntIntMap teamSpecialty = new IntIntMap(16);
+    private long generation;
+    private long loads, evictions;
+
+    public PartitionStore(Repository<Victim> victims, Repository<RescueTeam> teams,
+                          ForeignKeyIndex<Victim> victimsByDisaster, ForeignKeyIndex<RescueTeam> teamsByDisaster, long budgetBytes) {
+        this.victims = victims;
+        this.teams = teams;
+        this.victimsByDisaster = victimsByDisaster;
+        this.teamsByDisaster = teamsByDisaster;
+        this.budgetBytes = budgetBytes;
+        victims.addListener(new RepositoryListener<Victim>() {
+            public void added(Victim v) {
+                victimHome.put(v.getId(), v.getDisasterId());
+                changed(v.getDisasterId(), 1);
+            }
+            public void removed(Victim v) {
+                victimHome.remove(v.getId(), 0);
+                changed(v.getDisasterId(), -1);
+            }
+            public void loaded(Victim v) { partition(v.getDisasterId()).records.incrementAndGet(); }
+            public void unloaded(Victim v) { partition(v.getDisasterId()).records.decrementAndGet(); }
+        });
+        teams.addListener(new RepositoryListener<RescueTeam>() {
+            public void added(RescueTeam t) {
+                teamHome.put(t.getId(), t.getAssignedDisasterId());
+                teamSpecialty.put(t.getId(), t.getSpecialty().ordinal());
+                changed(t.getAssignedDisasterId(), 1);
+            }
+            public void removed(RescueTeam t) {
+                teamHome.remove(t.getId(), 0);
+                teamSpecialty.remove(t.getId(), 0);
+                changed(t.getAssignedDisasterId(), -1);
+            }
+            public void loaded(RescueTeam t) { partition(t.getAssignedDisasterId()).records.incrementAndGet(); }
+            public void unloaded(RescueTeam t) { partition(t.getAssignedDisasterId()).records.decrementAndGet(); }
+        });
+    }
+
+    // Runs under a repository lock, so it must not wait for this store's monitor
+    private void changed(int disasterId, int delta) {
+        Partition p = partition(disasterId);
+        p.records.addAndGet(delta);
+        p.dirty = true;
+    }
+
+    private Partition partition(int disasterId) {
+        return partitions.computeIfAbsent(disasterId, Partition::new);
+    }
+
+    // Forgets everything in memory and reads the manifest, counting the stored records into statistics.
+    // False if there is no manifest yet. Files no manifest entry refers to (left by an interrupted
+    // compaction) are deleted. Called with the repositories just cleared and no other thread running.
+    public synchronized boolean open(Statistics statistics) throws IOException {
+        partitions.clear();
+        recent.clear();
+        victimHome.clear();
+        teamHome.clear();
+        teamSpecialty.clear();
+        generation = 0;
+        File manifest = new File(MANIFEST);
+        if (!manifest.exists()) return false;
+        TeamSpecialty[] specialties = TeamSpecialty.values();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IOException("not a partition manifest: " + MANIFEST);
+            generation = in.readLong();
+            for (int n = in.readInt(); n > 0; n--) {
+                Partition p = new Partition(in.readInt());
+                p.generation = in.readLong();
+                p.storedVictims = in.readInt();
+                p.storedTeams = in.readInt();
+                p.resident = false;
+                partitions.put(p.disasterId, p);
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                int id = in.readInt();
+                int did = in.readInt();
+                victimHome.put(id, did);
+                statistics.countStoredVictim(did);
+            }
+            for (int n = in.readInt(); n > 0; n--) {
+                int id = in.readInt();
+                int did = in.readInt();
+                int specialty = in.readInt();
+                teamHome.put(id, did);
+                teamSpecialty.put(id, specialty);
+                statistics.countStoredTeam(specialties[specialty], did);
+            }
+        }
+        Set<String> current = new HashSet<>(Set.of(new File(MANIFEST).getName()));
+        for (Partition p : partitions.values()) {
+            current.add(fileName(p.disasterId, p.generation, "victims"));
+            current.add(fileName(p.disasterId, p.generation, "teams"));
+        }
+        File[] files = new File(DIR).listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (!current.contains(f.getName())) f.delete();
+            }
+        }
+        return true;
+    }
+
+    // After records were loaded the ordinary way (no manifest yet): they are all resident and changed
+    public synchronized void adoptResident() {
+        for (Partition p : partitions.values()) recent.put(p.disasterId, p);
+    }
+
+    // Reads a disaster's partition into the repositories unless it is resident, and marks it recently used.
+    // Writers call it holding the disaster's stripe, so the partition cannot be evicted under them.
+    public synchronized void ensureLoaded(int disasterId) {
+        Partition p = partition(disasterId);
+        recent.put(disasterId, p);
+        if (p.resident) return;
+        List<Victim> vs = read(p, "victims", p.storedVictims, Victim::read);
+        List<RescueTeam> ts = read(p, "teams", p.storedTeams, RescueTeam::read);
+        victims.load(vs);
+        teams.load(ts);
+        p.resident = true;
+        loads++;
+    }
+
+    private static <T> List<T> read(Partition p, String kind, int expected, java.util.function.Function<RecordReader, T> deserializer) {
+        if (expected == 0) return List.of();
+        String file = DIR + File.separator + fileName(p.disasterId, p.generation, kind);
+        List<T> records = DataHandler.loadFromFile(file, deserializer);
+        if (records.size() != expected) {
+            throw new UncheckedIOException(new IOException(file + ": expected " + expected + " records, read " + records.size()));
+        }
+        return records;
+    }
+
+    private static String fileName(int disasterId, long generation, String kind) {
+        return disasterId + "-" + generation + "." + kind;
+    }
+
+    // A disaster's victims and teams, loading the partition if needed
+    public synchronized List<Victim> victimsOf(int disasterId) {
+        ensureLoaded(disasterId);
+        return victimsByDisaster.get(disasterId);
+    }
+
+    public synchronized List<RescueTeam> teamsOf(int disasterId) {
+        ensureLoaded(disasterId);
+        return teamsByDisaster.get(disasterId);
+    }
+
+    // Loads the partition a victim or team lives in, if it exists at all
+    public void ensureVictimLoaded(int id) {
+        int home = victims.read(() -> victimHome.get(id, MISSING));
+        if (home != MISSING) ensureLoaded(home);
+    }
+
+    public void ensureTeamLoaded(int id) {
+        int home = teams.read(() -> teamHome.get(id, MISSING));
+        if (home != MISSING) ensureLoaded(home);
+    }
+
+    public int maxVictimId() { return victims.read(() -> max(victimHome)); }
+    public int maxTeamId() { return teams.read(() -> max(teamHome)); }
+
+    private static int max(IntIntMap ids) {
+        int[] max = { 0 };
+        ids.forEach((id, did) -> max[0] = Math.max(max[0], id));
+        return max[0];
+    }
+
+    // Every partition holding records, in ascending disaster id order
+    public int[] disasterIds() {
+        return partitions.values().stream()
+            .filter(p -> p.generation != 0 || p.records.get() > 0)
+            .mapToInt(p -> p.disasterId).sorted().toArray();
+    }
+
+    // Evicts clean partitions, least recently used first, until the resident ones fit the budget. The caller
+    // holds off every writer (App.trimPartitions). Returns whether the budget is still exceeded, which
+    // means changed partitions are holding the memory and should be compacted.
+    public synchronized boolean trim() {
+        long resident = 0;
+        for (Partition p : recent.values()) resident += (long) p.records.get() * RECORD_BYTES;
+        for (Iterator<Partition> it = recent.values().iterator(); it.hasNext() && resident > budgetBytes; ) {
+            Partition p = it.next();
+            if (p.dirty || p.writing) continue;
+            resident -= (long) p.records.get() * RECORD_BYTES;
+            victims.unload(victimsByDisaster.get(p.disasterId));
+            teams.unload(teamsByDisaster.get(p.disasterId));
+            p.resident = false;
+            it.remove();
+            evictions++;
+        }
+        return resident > budgetBytes;
+    }
+
+    // Under App.exclusive: takes the changed partitions as a new generation and returns the task that writes
+    // their files, then the manifest that makes them current, then deletes the files they replace
+    public synchronized Runnable capture() {
+        List<Partition> captured = new ArrayList<>();
+        List<List<Victim>> capturedVictims = new ArrayList<>();
+        List<List<RescueTeam>> capturedTeams = new ArrayList<>();
+        List<String> superseded = new ArrayList<>();
+        long next = generation + 1;
+        for (Partition p : partitions.values()) {
+            if (!p.dirty) continue;
+            List<Victim> vs = victimsByDisaster.get(p.disasterId);
+            List<RescueTeam> ts = teamsByDisaster.get(p.disasterId);
+            if (p.generation != 0) {
+                superseded.add(fileName(p.disasterId, p.generation, "victims"));
+                superseded.add(fileName(p.disasterId, p.generation, "teams"));
+            }
+            p.generation = vs.isEmpty() && ts.isEmpty() ? 0 : next;
+            p.storedVictims = vs.size();
+            p.storedTeams = ts.size();
+            p.dirty = false;
+            p.writing = true;
+            captured.add(p);
+            capturedVictims.add(vs);
+            capturedTeams.add(ts);
+        }
+        generation = next;
+        ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(manifest)) {
+            out.writeInt(MAGIC);
+            out.writeLong(generation);
+            List<Partition> stored = partitions.values().stream().filter(p -> p.generation != 0).toList();
+            out.writeInt(stored.size());
+            for (Partition p : stored) {
+                out.writeInt(p.disasterId);
+                out.writeLong(p.generation);
+                out.writeInt(p.storedVictims);
+                out.writeInt(p.storedTeams);
+            }
+            out.writeInt(victimHome.size());
+            victimHome.forEach((id, did) -> write(out, id, did));
+            out.writeInt(teamHome.size());
+            teamHome.forEach((id, did) -> {
+                write(out, id, did);
+                write(out, teamSpecialty.get(id, 0));
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] contents = manifest.toByteArray();
+        return () -> {
+            try {
+                new File(DIR).mkdirs();
+                for (int i = 0; i < captured.size(); i++) {
+                    Partition p = captured.get(i);
+                    if (p.generation == 0) continue;
+                    if (!capturedVictims.get(i).isEmpty()) {
+                        DataHandler.writeSnapshot(DIR + File.separator + fileName(p.disasterId, p.generation, "victims"), capturedVictims.get(i), Victim::serialize);
+                    }
+                    if (!capturedTeams.get(i).isEmpty()) {
+                        DataHandler.writeSnapshot(DIR + File.separator + fileName(p.disasterId, p.generation, "teams"), capturedTeams.get(i), RescueTeam::serialize);
+                    }
+                }
+                java.nio.file.Path tmp = java.nio.file.Paths.get(MANIFEST + ".tmp");
+                try (FileOutputStream out = new FileOutputStream(tmp.toFile())) {
+                    out.write(contents);
+                    out.getChannel().force(true);
+                }
+                java.nio.file.Files.move(tmp, java.nio.file.Paths.get(MANIFEST),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Written again by the next compaction; the journal still holds the changes
+                for (Partition p : captured) p.dirty = true;
+                throw new UncheckedIOException(e);
+            } finally {
+                for (Partition p : captured) p.writing = false;
+            }
+            for (String name : superseded) new File(DIR, name).delete();
+        };
+    }
+
+    private static void write(DataOutputStream out, int... values) {
+        try {
+            for (int v : values) out.writeInt(v);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // "<resident> of <partitions> partitions resident (~<MiB>), <loads> loads, <evictions> evictions"
+    public synchronized String describe() {
+        long bytes = 0;
+        for (Partition p : recent.values()) bytes += (long) p.records.get() * RECORD_BYTES;
+        return recent.size() + " of " + disasterIds().length + " partitions resident (~" + (bytes >> 20) + " MiB), "
+            + loads + " loads, " + evictions + " evictions";
+    }
+}
+
+// Immutable copy of the data for readers, taken one repository at a time while writers carry on
+class DataSnapshot {
+    private final long version;
+    private final List<Disaster> disasters;
+    private final List<Victim> victims;
+    private final List<RescueTeam> teams;
+    private final Statistics statistics;
+    private final IntMap<List<Victim>> victimsByDisaster = new IntMap<>(16);
+    private final IntMap<List<RescueTeam>> teamsByDisaster = new IntMap<>(16);
+
+    DataSnapshot(long version, List<Disaster> disasters, List<Victim> victims, List<RescueTeam> teams, Statistics statistics) {
+        this.version = version;
+        this.disasters = disasters;
+        this.victims = victims;
+        this.teams = teams;
+        this.statistics = statistics;
+        for (Victim v : victims) victimsByDisaster.computeIfAbsent(v.getDisasterId(), k -> new ArrayList<>()).add(v);
+        for (RescueTeam t : teams) teamsByDisaster.computeIfAbsent(t.getAssignedDisasterId(), k -> new ArrayList<>()).add(t);
+    }
+
+    public long version() { return version; }
+    public List<Disaster> disasters() { return disasters; }
+    public List<Victim> victims() { return victims; }
+    public List<RescueTeam> teams() { return teams; }
+    public Statistics statistics() { return statistics; }
+
+    public List<Victim> victimsOf(int disasterId) {
+        List<Victim> list = victimsByDisaster.get(disasterId);
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    public List<RescueTeam> teamsOf(int disasterId) {
+        List<RescueTeam> list = teamsByDisaster.get(disasterId);
+        return list == null ? Collections.emptyList() : list;
+    }
+}
+
+// Group-by/aggregate queries such as "victims by injury level per disaster type per month". Rows of one
+// entity are grouped by any of its own fields and its disaster's (joined on disasterId), and each group
+// gets a count, the min, max and average age (victims), and optionally the number of distinct values of
+// one more field. Rows are folded on the fork-join pool into partial groups, one per stream task, that
+// are merged pairwise at the end, so no group is shared between threads.
+class Aggregation {
+    enum Source { DISASTERS, VICTIMS, TEAMS }
+
+    // Grouping fields. The disaster's fields apply to every source; text fields group case-insensitively
+    // (by StringDictionary folded code) and are shown folded.
+    enum Field {
+        TYPE, SEVERITY, YEAR, MONTH, LOCATION, DISASTER,
+        INJURY, AGE_BAND,    // victims
+        SPECIALTY, STATUS;   // teams
+
+        boolean appliesTo(Source source) {
+            return switch (this) {
+                case INJURY, AGE_BAND -> source == Source.VICTIMS;
+                case SPECIALTY, STATUS -> source == Source.TEAMS;
+                default -> true;
+            };
+        }
+
+        static Field parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("unknown field " + name.trim() + "; fields are " + Arrays.toString(values()).toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    static final int NONE = Integer.MIN_VALUE;   // key of a missing disaster or date
+
+    // distinct may be null
+    record Query(Source source, List<Field> groupBy, Field distinct) {
+        Query {
+            groupBy = List.copyOf(groupBy);
+            for (Field f : groupBy) check(f, source);
+            if (distinct != null) check(distinct, source);
+        }
+
+        private static void check(Field f, Source source) {
+            if (!f.appliesTo(source)) throw new IllegalArgumentException(f.name().toLowerCase(Locale.ROOT) + " does not apply to " + source.name().toLowerCase(Locale.ROOT));
+        }
+
+        // source: disasters, victims or teams; groupBy: comma-separated fields; distinct: a field or blank
+        static Query parse(String source, String groupBy, String distinct) {
+            Source s;
+            try {
+                s = Source.valueOf(source.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("source must be disasters, victims or teams");
+            }
+            List<Field> fields = new ArrayList<>();
+            for (String name : groupBy.split(",")) {
+                if (!name.isBlank()) fields.add(Field.parse(name));
+            }
+            return new Query(s, fields, distinct == null || distinct.isBlank() ? null : Field.parse(distinct));
+        }
+    }
+
+    // minAge/maxAge/avgAge only mean something for victims
+    record Row(List<String> labels, long count, int minAge, int maxAge, double avgAge, long distinct) { }
+
+    // Groups sorted by key (enums in declaration order, months chronologically)
+    static List<Row> run(Query query, Collection<Disaster> disasters, java.util.stream.Stream<?> rows) {
+        IntMap<Disaster> byId = new IntMap<>(disasters.size());
+        for (Disaster d : disasters) byId.put(d.getId(), d);
+        Partial total = rows.parallel().collect(() -> new Partial(query, byId), Partial::add, Partial::merge);
+        List<Map.Entry<Key, Group>> groups = new ArrayList<>(total.groups.entrySet());
+        groups.sort((a, b) -> Arrays.compare(a.getKey().parts, b.getKey().parts));
+        List<Row> result = new ArrayList<>(groups.size());
+        for (Map.Entry<Key, Group> e : groups) {
+            int[] parts = e.getKey().parts;
+            List<String> labels = new ArrayList<>(parts.length);
+            for (int i = 0; i < parts.length; i++) labels.add(label(query.groupBy().get(i), parts[i]));
+            Group g = e.getValue();
+            result.add(new Row(labels, g.count, g.minAge, g.maxAge, g.count == 0 ? 0 : (double) g.ageSum / g.count,
+                g.distinct == null ? 0 : g.distinct.size()));
+        }
+        return result;
+    }
+
+    private static int key(Field f, Object row, int disasterId, Disaster d) {
+        return switch (f) {
+            case TYPE -> d == null ? NONE : d.getType().ordinal();
+            case SEVERITY -> d == null ? NONE : d.getSeverity().ordinal();
+            case YEAR -> d == null || d.getEpochDay() == OrderedIndex.NONE ? NONE : java.time.LocalDate.ofEpochDay(d.getEpochDay()).getYear();
+            case MONTH -> {
+                if (d == null || d.getEpochDay() == OrderedIndex.NONE) yield NONE;
+                java.time.LocalDate date = java.time.LocalDate.ofEpochDay(d.getEpochDay());
+                yield date.getYear() * 12 + date.getMonthValue() - 1;
+            }
+            case LOCATION -> d == null ? NONE : StringDictionary.SHARED.folded(d.getLocationCode());
+            case DISASTER -> disasterId;
+            case INJURY -> StringDictionary.SHARED.folded(((Victim) row).getInjuryCode());
+            case AGE_BAND -> Math.floorDiv(((Victim) row).getAge(), 10);
+            case SPECIALTY -> ((RescueTeam) row).getSpecialty().ordinal();
+            case STATUS -> StringDictionary.SHARED.folded(((RescueTeam) row).getStatusCode());
+        };
+    }
+
+    private static String label(Field f, int key) {
+        if (key == NONE) return "(none)";
+        return switch (f) {
+            case TYPE -> DisasterType.values()[key].name();
+            case SEVERITY -> Severity.values()[key].name();
+            case YEAR, DISASTER -> Integer.toString(key);
+            case MONTH -> String.format("%04d-%02d", Math.floorDiv(key, 12), Math.floorMod(key, 12) + 1);
+            case LOCATION, INJURY, STATUS -> StringDictionary.SHARED.value(key);
+            case AGE_BAND -> key * 10 + "-" + (key * 10 + 9);
+            case SPECIALTY -> TeamSpecialty.values()[key].name();
+        };
+    }
+
+    // Group key; the partial reuses one as a probe so rows hitting an existing group allocate nothing
+    private static final class Key {
+        final int[] parts;
+        int hash;
+
+        Key(int[] parts) {
+            this.parts = parts;
+            this.hash = Arrays.hashCode(parts);
+        }
+
+        @Override public boolean equals(Object o) { return o instanceof Key k && Arrays.equals(parts, k.parts); }
+        @Override public int hashCode() { return hash; }
+    }
+
+    private static final class Group {
+        long count;
+        long ageSum;
+        int minAge = Integer.MAX_VALUE;
+        int maxAge = Integer.MIN_VALUE;
+        IntIntMap distinct;   // used as a set
+
+        void merge(Group o) {
+            count += o.count;
+            ageSum += o.ageSum;
+            minAge = Math.min(minAge, o.minAge);
+            maxAge = Math.max(maxAge, o.maxAge);
+            if (o.distinct != null) {
+                if (distinct == null) distinct = new IntIntMap(o.distinct.size());
+                o.distinct.forEach((k, v) -> distinct.put(k, 1));
+            }
+        }
+    }
+
+    // One stream task's groups
+    private static final class Partial {
+        final Query query;
+        final IntMap<Disaster> disasters;
+        final HashMap<Key, Group> groups = new HashMap<>();
+        final Key probe;
+
+        Partial(Query query, IntMap<Disaster> disasters) {
+            this.query = query;
+            this.disasters = disasters;
+            this.probe = new Key(new int[query.groupBy().size()]);
+        }
+
+        void add(Object row) {
+            int disasterId = row instanceof Victim v ? v.getDisasterId()
+                : row instanceof RescueTeam t ? t.getAssignedDisasterId() : ((Disaster) row).getId();
+            Disaster d = row instanceof Disaster self ? self : disasters.get(disasterId);
+            List<Field> fields = query.groupBy();
+            for (int i = 0; i < probe.parts.length; i++) probe.parts[i] = key(fields.get(i), row, disasterId, d);
+            probe.hash = Arrays.hashCode(probe.parts);
+            Group g = groups.get(probe);
+            if (g == null) {
+                g = new Group();
+                groups.put(new Key(probe.parts.clone()), g);
+            }
+            g.count++;
+            if (row instanceof Victim v) {
+                g.ageSum += v.getAge();
+                g.minAge = Math.min(g.minAge, v.getAge());
+                g.maxAge = Math.max(g.maxAge, v.getAge());
+            }
+            if (query.distinct() != null) {
+                if (g.distinct == null) g.distinct = new IntIntMap(16);
+                g.distinct.put(key(query.distinct(), row, disasterId, d), 1);
+            }
+        }
+
+        void merge(Partial other) {
+            other.groups.forEach((k, g) -> {
+                Group mine = groups.get(k);
+                if (mine == null) groups.put(k, g);
+                else mine.merge(g);
+            });
+        }
+    }
+}
+
+// User class for authentication
+class User {
+    private String username;
+    private String password;
+    private String role; // "admin" or "user"
+
+    public User(String username, String password, String role) {
+        this.username = username;
+        this.password = password;
+        this.role = role;
+    }
+
+    public String getUsername() { return username; }
+    public String getPassword() { return password; }
+    public String getRole() { return role; }
+
+    public String serialize() {
+        return RecordWriter.local().field(username).field(password).field(role).toString();
+    }
+
+    public static User deserialize(String line) {
+        return read(RecordReader.local().reset(line, 0));
+    }
+
+    public static User read(RecordReader r) {
+        String username = r.nextString(false);
+        String password = r.nextString(false);
+        String role = r.nextString(false);
+        return r.complete() ? new User(username, password, role) : null;
+    }
+}
+
+// Headless front end over HTTP; binds to the loopback address and answers in plain text
+class DisasterServer {
+    private final com.sun.net.httpserver.HttpServer http;
+    private final java.util.concurrent.ExecutorService executor = newExecutor();
+    private final java.util.concurrent.ConcurrentHashMap<String, User> sessions = new java.util.concurrent.ConcurrentHashMap<>();
+
+    static {
+        // Headers and a small body go out as separate writes; without TCP_NODELAY the body waits about 40 ms
+        // for the client's delayed ACK. Read once when the JDK server first starts, so it must be set here.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    DisasterServer(int port) throws IOException {
+        http = com.sun.net.httpserver.HttpServer.create(new java.net.InetSocketAddress(java.net.InetAddress.getLoopbackAddress(), port), 0);
+        http.setExecutor(executor);
+        http.createContext("/", this::handle);
+    }
+
+    // A virtual thread per request where the runtime has them (Java 21+), a cached pool otherwise
+    private static java.util.concurrent.ExecutorService newExecutor() {
+        try {
+            return (java.util.concurrent.ExecutorService) java.util.concurrent.Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return java.util.concurrent.Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        http.start();
+    }
+
+    public void stop() {
+        http.stop(1);
+        executor.shutdown();
+    }
+
+    // The bound port, for servers started on port 0
+    public int port() {
+        return http.getAddress().getPort();
+    }
+
+    private void handle(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(body, true, java.nio.charset.StandardCharsets.UTF_8);
+        int status;
+        try {
+            Map<String, String> params = params(exchange);
+            String route = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+            String token = token(exchange, params);
+            User user = token != null ? sessions.get(token) : null;
+            if (route.equals("POST /login")) {
+                status = login(params, out);
+            } else if (user == null) {
+                status = 401;
+                out.println("Login required.");
+            } else {
+                App.requestUser.set(user);
+                try {
+                    status = dispatch(route, user, token, params, out);
+                } finally {
+                    App.requestUser.remove();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            body.reset();
+            status = 400;
+            out.println("Bad request: " + e.getMessage());
+        } catch (RuntimeException e) {
+            body.reset();
+            status = 500;
+            out.println("Error: " + e.getMessage());
+        }
+        byte[] bytes = body.toByteArray();
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private int login(Map<String, String> params, PrintStream out) {
+        User user = App.authenticate(param(params, "username"), param(params, "password"));
+        if (user == null) {
+            out.println("Invalid credentials.");
+            return 401;
+        }
+        String token = UUID.randomUUID().toString();
+        sessions.put(token, user);
+        App.audit.log(user.getUsername(), "Login: " + user.getUsername() + " (server)");
+        out.println(token);
+        return 200;
+    }
+
+    private int dispatch(String route, User user, String token, Map<String, String> params, PrintStream out) {
+        boolean admin = "admin".equals(user.getRole());
+        switch (route) {
+            case "POST /logout" -> {
+                sessions.remove(token);
+                out.println("Logged out.");
+            }
+            case "GET /disasters" -> App.printDisasters(out);
+            case "GET /report" -> App.printReport(out);
+            case "GET /statistics" -> App.printStatistics(out);
+            case "GET /alerts" -> App.printAlerts(out);
+            case "POST /undo", "POST /redo" -> {
+                out.println(route.equals("POST /undo") ? App.undoLast() : App.redoLast());
+                App.commitChanges();
+            }
+            case "GET /nearest" -> {
+                String spec = params.getOrDefault("specialty", "").trim();
+                App.printNearestTeams(out, Integer.parseInt(param(params, "disasterId")),
+                    Integer.parseInt(params.getOrDefault("k", "5")),
+                    spec.isEmpty() ? null : TeamSpecialty.valueOf(spec.toUpperCase()));
+            }
+            case "GET /search" -> {
+                int kind = switch (param(params, "by")) {
+                    case "type" -> 1;
+                    case "location" -> 2;
+                    case "injury" -> 3;
+                    case "specialty" -> 4;
+                    case "injuryLevel" -> 5;
+                    case "status" -> 6;
+                    default -> throw new IllegalArgumentException("by must be type, location, injury, specialty, injuryLevel or status");
+                };
+                String q = param(params, "q");
+                App.printSearch(out, kind, q);
+            }
+            case "GET /aggregate" -> App.printAggregate(out, Aggregation.Query.parse(param(params, "of"),
+                params.getOrDefault("by", ""), params.get("distinct")));
+            case "POST /disasters", "POST /victims", "POST /teams" -> {
+                if (!admin) {
+                    out.println("Access denied. Admins only.");
+                    return 403;
+                }
+                int status = create(route, params, out);
+                App.commitChanges();
+                return status;
+            }
+            default -> {
+                out.println("Not found: " + route);
+                return 404;
+            }
+        }
+        return 200;
+    }
+
+    private int create(String route, Map<String, String> params, PrintStream out) {
+        switch (route) {
+            case "POST /disasters" -> {
+                Disaster d = App.createDisaster(
+                    DisasterType.valueOf(param(params, "type").trim().toUpperCase()),
+                    param(params, "location"),
+                    Severity.valueOf(param(params, "severity").trim().toUpperCase()),
+                    param(params, "date"),
+                    params.getOrDefault("description", ""),
+                    coordinates(params));
+                out.println("Disaster added. ID: " + d.getId());
+            }
+            case "POST /victims" -> {
+                Victim v = App.createVictim(param(params, "name"), Integer.parseInt(param(params, "age")),
+                    params.getOrDefault("contact", ""), param(params, "injury"), Integer.parseInt(param(params, "disasterId")));
+                if (v == null) {
+                    out.println("Disaster ID not found. Victim not added.");
+                    return 404;
+                }
+                out.println("Victim added. ID: " + v.getId());
+            }
+            default -> {
+                RescueTeam t = App.createTeam(param(params, "name"),
+                    TeamSpecialty.valueOf(param(params, "specialty").trim().toUpperCase()),
+                    Integer.parseInt(param(params, "disasterId")), params.getOrDefault("status", ""),
+                    coordinates(params));
+                if (t == null) {
+                    out.println("Disaster ID not found. Team not assigned.");
+                    return 404;
+                }
+                out.println("Team assigned. ID: " + t.getId());
+            }
+        }
+        return 201;
+    }
+
+    // Optional lat and lon parameters
+    private static double[] coordinates(Map<String, String> params) {
+        return App.parseCoordinates(params.containsKey("lat") ? params.get("lat") + "," + param(params, "lon") : "");
+    }
+
+    // Query string and form-encoded body parameters; body values win
+    private static Map<String, String> params(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        decode(exchange.getRequestURI().getRawQuery(), params);
+        try (InputStream in = exchange.getRequestBody()) {
+            decode(new String(in.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void decode(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) return;
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(java.net.URLDecoder.decode(key, java.nio.charset.StandardCharsets.UTF_8),
+                java.net.URLDecoder.decode(value, java.nio.charset.StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String param(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) throw new IllegalArgumentException("missing parameter " + name);
+        return value;
+    }
+
+    // "Authorization: Bearer <token>" or a token parameter
+    private static String token(com.sun.net.httpserver.HttpExchange exchange, Map<String, String> params) {
+        String auth = exchange.getRequestHeaders().getFirst("Authorization");
+        if (auth != null && auth.startsWith("Bearer ")) return auth.substring(7).trim();
+        return params.get("token");
+    }
+}
+
+// Console rendering for long listings. Output goes through one large buffer instead of an autoflushing
+// println per row, and after every pageSize lines (0 = no paging) the listing waits for Enter (next page)
+// or q (stop). The listing itself is just blocked while the operator reads, so it acts as the cursor:
+// rows past the last page shown are never fetched or formatted, and q unwinds it.
+class Pager extends OutputStream {
+    private static final String PROMPT = "-- Enter for more, q to stop -- ";
+
+    // Thrown through the listing when the operator stops it
+    private static final class Stop extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Stop() { super(null, null, false, false); }
+    }
+
+    private final PrintStream console;
+    private final BufferedOutputStream buffer;
+    private final int pageSize;
+    private final java.util.function.Supplier<String> input;
+    private int lines;
+    private boolean stopped;   // later writes (the rest of the row in flight) are dropped
+
+    private Pager(PrintStream console, int pageSize, java.util.function.Supplier<String> input) {
+        this.console = console;
+        this.buffer = new BufferedOutputStream(console, 1 << 16);
+        this.pageSize = pageSize;
+        this.input = input;
+    }
+
+    // Runs listing against a paging stream over console; input supplies the operator's answers
+    static void show(PrintStream console, int pageSize, java.util.function.Supplier<String> input, java.util.function.Consumer<PrintStream> listing) {
+        Pager pager = new Pager(console, pageSize, input);
+        PrintStream out = new PrintStream(pager, false);
+        try {
+            listing.accept(out);
+        } catch (Stop e) {
+            // stopped at a page boundary
+        } finally {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (stopped) return;
+        if (pageSize > 0 && lines == pageSize) nextPage();
+        buffer.write(b);
+        if (b == '\n') lines++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int end = off + len;
+        while (off < end && !stopped) {
+            if (pageSize > 0 && lines == pageSize) nextPage();
+            int i = off;
+            while (i < end && (pageSize <= 0 || lines < pageSize)) {
+                if (b[i++] == '\n') lines++;
+            }
+            buffer.write(b, off, i - off);
+            off = i;
+        }
+    }
+
+    // Only called once a full page is out and more is coming
+    private void nextPage() throws IOException {
+        buffer.flush();
+        console.print(PROMPT);
+        console.flush();
+        String answer = input.get();
+        if (answer != null && answer.trim().equalsIgnoreCase("q")) {
+            stopped = true;
+            throw new Stop();
+        }
+        lines = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        buffer.flush();
+    }
+}
+
+// Main class
+public class App {
+    static Repository<Disaster> disasters = new Repository<>(Disaster::getId);
+    // dm.victims.store=columnar keeps victims in primitive columns instead of one object each
+    static Repository<Victim> victims = new Repository<>(Victim::getId,
+        System.getProperty("dm.victims.store", "objects").equals("columnar") ? new VictimColumns() : new ObjectSlots<>());
+    static Repository<RescueTeam> teams = new Repository<>(RescueTeam::getId);
+    static ForeignKeyIndex<Victim> victimsByDisaster = new ForeignKeyIndex<>(victims, Victim::getDisasterId, Victim::getId);
+    static ForeignKeyIndex<RescueTeam> teamsByDisaster = new ForeignKeyIndex<>(teams, RescueTeam::getAssignedDisasterId, RescueTeam::getId);
+    static Statistics statistics = new Statistics(disasters, victims, teams);
+    static OrphanTracker orphans = new OrphanTracker(disasters, victims, teams, victimsByDisaster, teamsByDisaster);
+    // dm.storage=partitioned keeps victims and teams on disk per disaster, with only a working set in memory
+    static PartitionStore partitions = System.getProperty("dm.storage", "single").equals("partitioned")
+        ? new PartitionStore(victims, teams, victimsByDisaster, teamsByDisaster, Long.getLong("dm.partitions.budgetBytes", 64L << 20))
+        : null;
+    static TextIndex<Disaster> disasterText = new TextIndex<>(disasters, Disaster::getId,
+        List.<java.util.function.Function<Disaster, String>>of(Disaster::getLocation, Disaster::getDescription));
+    static TextIndex<Victim> victimText = new TextIndex<>(victims, Victim::getId,
+        List.<java.util.function.Function<Victim, String>>of(Victim::getName, Victim::getInjuryLevel));
+    static final int SEARCH_LIMIT = Integer.getInteger("dm.search.limit", 20);
+    // Lines per console page; 0 turns paging off, the default when input is not a terminal (scripts, pipes)
+    static final int PAGE_SIZE = Integer.getInteger("dm.console.pageSize", System.console() != null ? 40 : 0);
+    static OrderedIndex<Disaster> disastersByDate = new OrderedIndex<>(disasters, Disaster::getEpochDay, Disaster::getId);
+    static OrderedIndex<Disaster> disastersBySeverity = new OrderedIndex<>(disasters, d -> d.getSeverity().ordinal(), Disaster::getId);
+    static OrderedIndex<Victim> victimsByAge = new OrderedIndex<>(victims, Victim::getAge, Victim::getId);
+    static GeoIndex<Disaster> disasterGeo = new GeoIndex<>(disasters, Disaster::getLatitude, Disaster::getLongitude);
+    static GeoIndex<RescueTeam> teamGeo = new GeoIndex<>(teams, RescueTeam::getLatitude, RescueTeam::getLongitude);
+    static Journal journal = new Journal();
+    static volatile List<User> users = new java.util.concurrent.CopyOnWriteArrayList<>();
+    static LogStore logStore = new LogStore("logs");
+    static AuditLog audit = new AuditLog(logStore);
+    static User currentUser = null;
+    static Scanner sc = new Scanner(System.in);
+
+    // Writers and snapshot() share the read side (writers serialize per disaster on a stripe);
+    // exclusive() takes the write side to see the data with no write in flight
+    static final java.util.concurrent.locks.ReentrantReadWriteLock dataLock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+    static final java.util.concurrent.locks.ReentrantLock[] stripes = new java.util.concurrent.locks.ReentrantLock[64];
+    static {
+        for (int i = 0; i < stripes.length; i++) stripes[i] = new java.util.concurrent.locks.ReentrantLock();
+    }
+    static volatile DataSnapshot lastSnapshot;
+    // User a server request thread is acting for; the console thread acts as currentUser
+    static final ThreadLocal<User> requestUser = new ThreadLocal<>();
+
+    // Undo/redo histories by username; with dm.undo.persist they are kept in UNDO_FILE across restarts
+    static final Map<String, UndoHistory> histories = new java.util.concurrent.ConcurrentHashMap<>();
+    static final boolean PERSIST_UNDO = Boolean.getBoolean("dm.undo.persist");
+    static final String UNDO_FILE = "undo.log";
+    static volatile boolean undoDirty;
+
+    // Per-disaster timeline logs
+    static TimelineStore timelines = new TimelineStore("timelines.dat");
+
+    // Snapshot format written by compaction: "text" (the .txt files) or "binary" (snapshot.bin)
+    static final boolean BINARY_SNAPSHOT = System.getProperty("dm.snapshot", "text").equals("binary");
+
+    public static void main(String[] args) {
+        if (args.length == 2 && args[0].equals("--convert")) {
+            convertSnapshot(args[1]);
+            return;
+        }
+        if (args.length == 3 && args[0].equals("--import")) {
+            importCsv(args[1], args[2]);
+            return;
+        }
+        List<String> options = Arrays.asList(args);
+        int serverAt = options.indexOf("--server");
+        // Load data; starting without it would let the next save overwrite the files that failed to load
+        try {
+            openData();
+        } catch (UncheckedIOException e) {
+            System.out.println("Error: " + e.getMessage() + ": " + e.getCause().getMessage());
+            System.out.println("Data files were left untouched. Fix or restore them and start again.");
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(audit::close));
+
+        DisasterServer server = null;
+        if (serverAt >= 0) {
+            int port = serverAt + 1 < args.length && args[serverAt + 1].matches("\\d+") ? Integer.parseInt(args[serverAt + 1]) : 8080;
+            try {
+                server = new DisasterServer(port);
+            } catch (IOException e) {
+                System.out.println("Could not start server: " + e.getMessage());
+                return;
+            }
+            server.start();
+            System.out.println("Server listening on http://localhost:" + port + "/");
+            if (options.contains("--headless")) {
+                // No console client: serve until the process is stopped
+                DisasterServer running = server;
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    running.stop();
+                    journal.close();
+                    timelines.close();
+                }));
+                if (users.isEmpty()) System.out.println("No users found. Register one from the console first.");
+                return;
+            }
+        }
+
+        if (users.isEmpty()) {
+            System.out.println("No users found. Please register a new user.");
+            registerUser();
+        }
+        if (!login()) {
+            System.out.println("Too many failed attempts. Exiting.");
+            return;
+        }
+        int choice;
+        do {
+            System.out.println("\n--- Disaster Management System ---");
+            System.out.println("Logged in as: " + currentUser.getUsername() + " (" + currentUser.getRole() + ")");
+            System.out.println("1. Add Disaster");
+            System.out.println("2. View All Disasters");
+            System.out.println("3. Add Victim");
+            System.out.println("4. Assign Rescue Team");
+            System.out.println("5. View Report");
+            System.out.println("6. Save Data");
+            System.out.println("7. Load Data");
+            System.out.println("8. Register New User");
+            System.out.println("9. Edit/Delete Data");
+            System.out.println("10. View Logs");
+            System.out.println("11. Flush Logs");
+            System.out.println("12. Statistics");
+            System.out.println("13. Search/Filter");
+            System.out.println("14. Sort");
+            System.out.println("15. Undo");
+            System.out.println("16. Redo");
+            System.out.println("17. Alerts");
+            System.out.println("18. Change Password");
+            System.out.println("19. Export Data CSV");
+            System.out.println("20. View Disaster Timeline");
+            System.out.println("21. Bulk Import CSV");
+            System.out.println("22. Nearby Search");
+            System.out.println("23. Analytics");
+            System.out.println("24. Exit");
+            System.out.print("Enter your choice: ");
+            int menuChoice = getIntInput("");
+            choice = menuChoice;
+
+            switch (choice) {
+                case 1 -> requireAdmin(App::addDisaster);
+                case 2 -> viewDisasters();
+                case 3 -> requireAdmin(App::addVictim);
+                case 4 -> requireAdmin(App::assignRescueTeam);
+                case 5 -> viewReport();
+                case 6 -> requireAdmin(App::saveData);
+                case 7 -> loadData();
+                case 8 -> registerUser();
+                case 9 -> requireAdmin(App::editOrDeleteMenu);
+                case 10 -> viewLogs();
+                case 11 -> flushLogs();
+                case 12 -> showStatistics();
+                case 13 -> searchMenu();
+                case 14 -> sortMenu();
+                case 15 -> undo();
+                case 16 -> redo();
+                case 17 -> showAlerts();
+                case 18 -> changePassword();
+                case 19 -> exportData();
+                case 20 -> viewDisasterTimeline();
+                case 21 -> requireAdmin(App::bulkImport);
+                case 22 -> nearbySearch();
+                case 23 -> analytics();
+                case 24 -> System.out.println("Exiting...");
+                default -> System.out.println("Invalid choice!");
+            }
+            commitChanges();
+
+        } while (choice != 24);
+        if (server != null) server.stop();
+        journal.close();
+        timelines.close();
+    }
+
+    // Makes the last command durable and folds the journal once it has grown large
+    static void commitChanges() {
+        journal.commit();
+        exclusive(() -> {
+            journal.compactIfNeeded(App::captureSnapshot);
+            // Changed partitions can only be evicted once written out
+            if (partitions != null && partitions.trim()) journal.compact(App::captureSnapshot);
+        });
+        if (PERSIST_UNDO && undoDirty) {
+            undoDirty = false;
+            try {
+                UndoHistory.save(histories, UNDO_FILE);
+            } catch (IOException e) {
+                System.out.println("Error saving undo history: " + e.getMessage());
+            }
+        }
+    }
+
+    // Registration method
+    static void registerUser() {
+        System.out.print("Enter new username: ");
+        String uname = sc.nextLine();
+        if (findUser(uname) != null) {
+            System.out.println("Username already exists. Registration failed.");
+            return;
+        }
+        System.out.print("Enter new password: ");
+        String pwd = sc.nextLine();
+        String role;
+        while (true) {
+            System.out.print("Enter role (admin/user): ");
+            role = sc.nextLine().trim().toLowerCase();
+            if (role.equals("admin") || role.equals("user")) break;
+            System.out.println("Invalid role. Please enter 'admin' or 'user'.");
+        }
+        User user = new User(uname, pwd, role);
+        boolean added = exclusive(() -> {
+            if (findUser(uname) != null) return false;
+            users.add(user);
+            journal.upsert('U', user.serialize());
+            return true;
+        });
+        if (!added) {
+            System.out.println("Username already exists. Registration failed.");
+            return;
+        }
+        log("User registered: " + uname + " as " + role);
+        journal.commit();
+        System.out.println("User registered successfully!");
+    }
+
+    // Login method
+    static boolean login() {
+        int attempts = 0;
+        while (attempts < 3) {
+            System.out.print("Username: ");
+            String uname = sc.nextLine();
+            System.out.print("Password: ");
+            String pwd = sc.nextLine();
+            User u = authenticate(uname, pwd);
+            if (u != null) {
+                currentUser = u;
+                log("Login: " + uname);
+                System.out.println("Login successful!");
+                return true;
+            }
+            System.out.println("Invalid credentials. Try again.");
+            attempts++;
+        }
+        return false;
+    }
+
+    static User findUser(String username) {
+        for (User u : users) {
+            if (u.getUsername().equals(username)) return u;
+        }
+        return null;
+    }
+
+    // The user with these credentials, or null
+    static User authenticate(String username, String password) {
+        User u = findUser(username);
+        return u != null && u.getPassword().equals(password) ? u : null;
+    }
+
+    // A write touching one disaster and its victims and teams; writes to other disasters run alongside.
+    // The disaster's partition is loaded first and, while the stripe is held, cannot be evicted.
+    static <T> T striped(int disasterId, java.util.function.Supplier<T> action) {
+        java.util.concurrent.locks.ReentrantLock stripe = stripes[disasterId & (stripes.length - 1)];
+        dataLock.readLock().lock();
+        stripe.lock();
+        try {
+            resident(disasterId);
+            return action.get();
+        } finally {
+            stripe.unlock();
+            dataLock.readLock().unlock();
+        }
+    }
+
+    static void striped(int disasterId, Runnable action) {
+        striped(disasterId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // Whole-data operations (load, save, undo, users): no other write runs meanwhile
+    static <T> T exclusive(java.util.function.Supplier<T> action) {
+        dataLock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            dataLock.writeLock().unlock();
+        }
+    }
+
+    static void exclusive(Runnable action) {
+        exclusive(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // Copy of all data; reused until the next write. Intake keeps running while it is taken: each
+    // repository is copied under its own lock together with its counters, so every list matches its
+    // statistics, but a write may land between two of the copies. Only exclusive() operations wait.
+    static DataSnapshot snapshot() {
+        DataSnapshot last = lastSnapshot;
+        if (last != null && last.version() == dataVersion()) return last;
+        List<Disaster> ds;
+        List<Victim> vs;
+        List<RescueTeam> ts;
+        Statistics stats = Statistics.empty();
+        long version;
+        dataLock.readLock().lock();
+        try {
+            // Read first: a write during the copy makes the snapshot newer than its version, never older
+            version = dataVersion();
+            ds = disasters.locked(() -> {
+                statistics.copyDisasterCountsTo(stats);
+                return disasters.snapshotLocked();
+            });
+            vs = victims.locked(() -> {
+                statistics.copyVictimCountsTo(stats);
+                return victims.snapshotLocked();
+            });
+            ts = teams.locked(() -> {
+                statistics.copyTeamCountsTo(stats);
+                return teams.snapshotLocked();
+            });
+        } finally {
+            dataLock.readLock().unlock();
+        }
+        DataSnapshot snapshot = new DataSnapshot(version, ds, vs, ts, stats);
+        lastSnapshot = snapshot;
+        return snapshot;
+    }
+
+    // Copy of the counters alone, without the records: costs the number of disasters, not the data size
+    static Statistics currentStatistics() {
+        Statistics stats = Statistics.empty();
+        dataLock.readLock().lock();
+        try {
+            disasters.locked(() -> {
+                statistics.copyDisasterCountsTo(stats);
+                return null;
+            });
+            victims.locked(() -> {
+                statistics.copyVictimCountsTo(stats);
+                return null;
+            });
+            teams.locked(() -> {
+                statistics.copyTeamCountsTo(stats);
+                return null;
+            });
+        } finally {
+            dataLock.readLock().unlock();
+        }
+        return stats;
+    }
+
+    static long dataVersion() {
+        return disasters.version() + victims.version() + teams.version();
+    }
+
+    // Partitioned storage: brings a disaster's victims and teams into memory before they are used
+    static void resident(int disasterId) {
+        if (partitions != null) partitions.ensureLoaded(disasterId);
+    }
+
+    // Evicts cold partitions unless a write is in flight. Scans call it between partitions, so a report
+    // over every disaster holds no more than the budget at a time.
+    static void trimPartitions() {
+        if (partitions == null || !dataLock.writeLock().tryLock()) return;
+        try {
+            partitions.trim();
+        } finally {
+            dataLock.writeLock().unlock();
+        }
+    }
+
+    // A disaster's victims and teams: from the snapshot, or from its partition (loaded if needed)
+    static List<Victim> victimsOf(DataSnapshot data, int disasterId) {
+        return partitions == null ? data.victimsOf(disasterId) : partitions.victimsOf(disasterId);
+    }
+
+    static List<RescueTeam> teamsOf(DataSnapshot data, int disasterId) {
+        return partitions == null ? data.teamsOf(disasterId) : partitions.teamsOf(disasterId);
+    }
+
+    // Every victim and team: from the snapshot, or partition by partition, trimming as the scan moves on
+    static java.util.stream.Stream<Victim> allVictims(DataSnapshot data) {
+        if (partitions == null) return data.victims().stream();
+        return Arrays.stream(partitions.disasterIds()).boxed().flatMap(did -> {
+            List<Victim> vs = partitions.victimsOf(did);
+            trimPartitions();
+            return vs.stream();
+        });
+    }
+
+    static java.util.stream.Stream<RescueTeam> allTeams(DataSnapshot data) {
+        if (partitions == null) return data.teams().stream();
+        return Arrays.stream(partitions.disasterIds()).boxed().flatMap(did -> {
+            List<RescueTeam> ts = partitions.teamsOf(did);
+            trimPartitions();
+            return ts.stream();
+        });
+    }
+
+    // Long console listings go through a Pager: buffered, and paused every PAGE_SIZE lines
+    static void paged(java.util.function.Consumer<PrintStream> listing) {
+        Pager.show(System.out, PAGE_SIZE, sc::nextLine, listing);
+    }
+
+    // Require admin role for certain actions
+    static void requireAdmin(Runnable action) {
+        if (currentUser != null && "admin".equals(currentUser.getRole())) {
+            action.run();
+        } else {
+            System.out.println("Access denied. Admins only.");
+        }
+    }
+
+    // Input validation for integer
+    static int getIntInput(String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            try {
+                return Integer.parseInt(sc.nextLine());
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid number. Try again.");
+            }
+        }
+    }
+
+    // Input validation for dd-MM-yyyy dates
+    static String getDateInput(String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            String date = sc.nextLine().trim();
+            if (Disaster.epochDay(date) != OrderedIndex.NONE) return date;
+            System.out.println("Invalid date. Use dd-MM-yyyy.");
+        }
+    }
+
+    // Add Disaster with Undo
+    static void addDisaster() {
+        System.out.println("Available types: " + Arrays.toString(DisasterType.values()));
+        System.out.print("Enter Type: ");
+        DisasterType type = DisasterType.valueOf(sc.nextLine().trim().toUpperCase());
+        System.out.print("Enter Location: ");
+        String location = sc.nextLine();
+        System.out.println("Available severity: " + Arrays.toString(Severity.values()));
+        System.out.print("Enter Severity: ");
+        Severity severity = Severity.valueOf(sc.nextLine().trim().toUpperCase());
+        String date = getDateInput("Enter Date (dd-MM-yyyy): ");
+        System.out.print("Enter Description: ");
+        String description = sc.nextLine();
+        System.out.print("Enter Coordinates lat,lon (blank to skip): ");
+        double[] at = parseCoordinates(sc.nextLine());
+
+        Disaster d = createDisaster(type, location, severity, date, description, at);
+        System.out.println("Disaster added. ID: " + d.getId());
+    }
+
+    // Operations below are shared by the console and the server and act for actor()
+
+    // at: {latitude, longitude}, NaN when unknown (see parseCoordinates)
+    static Disaster createDisaster(DisasterType type, String location, Severity severity, String date, String description, double[] at) {
+        if (Disaster.epochDay(date) == OrderedIndex.NONE) throw new IllegalArgumentException("Date must be dd-MM-yyyy: " + date);
+        Disaster d = new Disaster(type, location, severity, date, description, at[0], at[1]);
+        return striped(d.getId(), () -> {
+            disasters.put(d);
+            log("Disaster added: ID " + d.getId() + " by " + actor());
+            logDisasterAction(d.getId(), "Disaster created");
+            remember("Disaster added ID " + d.getId(), List.of(deleteOf('D', d.getId())), List.of(upsertOf('D', d.serialize())));
+            return d;
+        });
+    }
+
+    // Null if the disaster does not exist
+    static Victim createVictim(String name, int age, String contact, String injury, int did) {
+        return striped(did, () -> {
+            if (findDisasterById(did) == null) return null;
+            Victim v = new Victim(name, age, contact, injury, did);
+            victims.put(v);
+            log("Victim added: " + name + " to Disaster ID " + did + " by " + actor());
+            logDisasterAction(did, "Victim added: " + name);
+            remember("Victim added ID " + v.getId(), List.of(deleteOf('V', v.getId())), List.of(upsertOf('V', v.serialize())));
+            return v;
+        });
+    }
+
+    // Null if the disaster does not exist
+    static RescueTeam createTeam(String name, TeamSpecialty spec, int did, String status, double[] at) {
+        return striped(did, () -> {
+            if (findDisasterById(did) == null) return null;
+            RescueTeam t = new RescueTeam(name, spec, did, status, at[0], at[1]);
+            teams.put(t);
+            log("Team assigned: " + name + " to Disaster ID " + did + " by " + actor());
+            logDisasterAction(did, "Team assigned: " + name);
+            remember("Team assigned ID " + t.getId(), List.of(deleteOf('T', t.getId())), List.of(upsertOf('T', t.serialize())));
+            return t;
+        });
+    }
+
+    // Readers work on snapshot() so long reports never hold up intake
+
+    static void printDisasters(PrintStream out) {
+        List<Disaster> ds = snapshot().disasters();
+        if (ds.isEmpty()) {
+            out.println("No disasters recorded.");
+        } else {
+            ds.forEach(out::println);
+        }
+    }
+
+    static void printReport(PrintStream out) {
+        DataSnapshot data = snapshot();
+        out.println("\n--- Disaster Report ---");
+        for (Disaster d : data.disasters()) {
+            out.println(d);
+            out.println("Victims:");
+            for (Victim v : victimsOf(data, d.getId())) {
+                out.println("  " + v);
+            }
+            out.println("Teams:");
+            for (RescueTeam t : teamsOf(data, d.getId())) {
+                out.println("  " + t);
+            }
+            out.println("--------------------");
+            trimPartitions();
+        }
+    }
+
+    static void printStatistics(PrintStream out) {
+        Statistics stats = currentStatistics();
+        out.println("\n--- Statistics ---");
+        out.println("Total Disasters: " + stats.disasters());
+        out.println("Total Victims: " + stats.victims());
+        out.println("Total Rescue Teams: " + stats.teams());
+        if (partitions != null) out.println("Storage: " + partitions.describe());
+
+        out.println("Disasters by Type: " + stats.disastersByType());
+        out.println("Disasters by Severity: " + stats.disastersBySeverity());
+        out.println("Victims per Disaster: " + stats.victimsPerDisaster());
+        out.println("Teams per Disaster: " + stats.teamsPerDisaster());
+        out.println("Teams by Specialty: " + stats.teamsBySpecialty());
+    }
+
+    // kind: 1 disasters by type, 2 disasters by location/description words, 3 victims by name/injury level words,
+    // 4 teams by specialty, 5 victims by injury level, 6 teams by status. Word searches go through the text
+    // indexes and list the best SEARCH_LIMIT matches; 5 and 6 match case-insensitively on folded codes.
+    static void printSearch(PrintStream out, int kind, String value) {
+        if (kind == 2 || kind == 3) {
+            List<?> hits = kind == 2 ? disasterText.search(value, SEARCH_LIMIT) : victimText.search(value, SEARCH_LIMIT);
+            if (hits.isEmpty()) out.println("No matches.");
+            hits.forEach(out::println);
+            return;
+        }
+        DataSnapshot data = snapshot();
+        switch (kind) {
+            case 1 -> {
+                String type = value.toUpperCase();
+                data.disasters().stream().filter(d -> d.getType().toString().equals(type)).forEach(out::println);
+            }
+            case 4 -> {
+                String spec = value.toUpperCase();
+                allTeams(data).filter(t -> t.getSpecialty().toString().equals(spec)).forEach(out::println);
+            }
+            case 5 -> {
+                // A level never seen has no code, and so no matches
+                int level = StringDictionary.SHARED.find(value);
+                if (level < 0) out.println("No matches.");
+                else printMatches(out, allVictims(data).filter(v -> StringDictionary.SHARED.folded(v.getInjuryCode()) == level));
+            }
+            case 6 -> {
+                int status = StringDictionary.SHARED.find(value);
+                if (status < 0) out.println("No matches.");
+                else printMatches(out, allTeams(data).filter(t -> StringDictionary.SHARED.folded(t.getStatusCode()) == status));
+            }
+            default -> out.println("Invalid choice!");
+        }
+    }
+
+    private static void printMatches(PrintStream out, java.util.stream.Stream<?> matches) {
+        boolean[] any = { false };
+        matches.forEach(m -> {
+            any[0] = true;
+            out.println(m);
+        });
+        if (!any[0]) out.println("No matches.");
+    }
+
+    // One row per group: the group's labels, count, the age columns for victims and the distinct count
+    static void printAggregate(PrintStream out, Aggregation.Query query) {
+        DataSnapshot data = snapshot();
+        java.util.stream.Stream<?> rows = switch (query.source()) {
+            case DISASTERS -> data.disasters().stream();
+            case VICTIMS -> allVictims(data);
+            case TEAMS -> allTeams(data);
+        };
+        List<Aggregation.Row> result = Aggregation.run(query, data.disasters(), rows);
+        boolean ages = query.source() == Aggregation.Source.VICTIMS;
+        StringJoiner header = new StringJoiner(" | ");
+        query.groupBy().forEach(f -> header.add(f.name().toLowerCase(Locale.ROOT)));
+        header.add("count");
+        if (ages) header.add("min age").add("max age").add("avg age");
+        if (query.distinct() != null) header.add("distinct " + query.distinct().name().toLowerCase(Locale.ROOT));
+        out.println(header);
+        for (Aggregation.Row row : result) {
+            StringJoiner line = new StringJoiner(" | ");
+            row.labels().forEach(line::add);
+            line.add(Long.toString(row.count()));
+            if (ages) line.add(Integer.toString(row.minAge())).add(Integer.toString(row.maxAge())).add(String.format("%.1f", row.avgAge()));
+            if (query.distinct() != null) line.add(Long.toString(row.distinct()));
+            out.println(line);
+        }
+        if (result.isEmpty()) out.println("No matches.");
+    }
+
+    // "lat,lon" in decimal degrees; blank means unknown (NaN, NaN)
+    static double[] parseCoordinates(String text) {
+        if (text.isBlank()) return new double[] {Double.NaN, Double.NaN};
+        String[] parts = text.split(",");
+        if (parts.length != 2) throw new IllegalArgumentException("Coordinates must be lat,lon");
+        double lat = Double.parseDouble(parts[0].trim());
+        double lon = Double.parseDouble(parts[1].trim());
+        if (!(lat >= -90 && lat <= 90) || !(lon >= -180 && lon <= 180)) {
+            throw new IllegalArgumentException("Coordinates out of range: " + text.trim());
+        }
+        return new double[] {lat, lon};
+    }
+
+    // The k teams (optionally of one specialty) nearest a disaster, wherever they are assigned
+    static void printNearestTeams(PrintStream out, int did, int k, TeamSpecialty spec) {
+        Disaster d = findDisasterById(did);
+        if (d == null || !d.hasCoordinates()) {
+            out.println(d == null ? "Disaster not found." : "Disaster has no coordinates.");
+            return;
+        }
+        List<GeoIndex.Near<RescueTeam>> near = teamGeo.nearest(d.getLatitude(), d.getLongitude(), k,
+            t -> spec == null || t.getSpecialty() == spec);
+        if (near.isEmpty()) out.println("No teams with coordinates.");
+        near.forEach(n -> out.printf("%.1f km - %s%n", n.km(), n.item()));
+    }
+
+    static void printAlerts(PrintStream out) {
+        DataSnapshot data = snapshot();
+        data.disasters().stream()
+            .filter(d -> data.statistics().teamsFor(d.getId()) == 0)
+            .forEach(d -> out.println("Alert: No team assigned for Disaster ID " + d.getId()));
+        if (partitions != null) {
+            // Orphans are found among resident records, so bring in the partitions of missing disasters
+            for (int did : partitions.disasterIds()) {
+                if (!disasters.contains(did)) partitions.ensureLoaded(did);
+            }
+        }
+        for (int id : orphans.victims()) {
+            Victim v = findVictimById(id);
+            if (v != null) out.println("Alert: Victim " + v.getName() + " not assigned to any disaster!");
+        }
+        for (int id : orphans.teams()) {
+            RescueTeam t = findTeamById(id);
+            if (t != null) out.println("Alert: Team " + t.getTeamName() + " assigned to missing Disaster ID " + t.getAssignedDisasterId() + "!");
+        }
+    }
+
+    static void viewDisasters() {
+        paged(App::printDisasters);
+    }
+
+    static void addVictim() {
+        System.out.print("Enter Name: ");
+        String name = sc.nextLine();
+        int age = getIntInput("Enter Age: ");
+        System.out.print("Enter Contact Info: ");
+        String contact = sc.nextLine();
+        System.out.print("Enter Injury Level: ");
+        String injury = sc.nextLine();
+        int did = getIntInput("Enter Disaster ID: ");
+
+        Victim v = createVictim(name, age, contact, injury, did);
+        if (v == null) {
+            System.out.println("Disaster ID not found. Victim not added.");
+            return;
+        }
+        System.out.println("Victim added. ID: " + v.getId());
+    }
+
+    static void assignRescueTeam() {
+        System.out.print("Enter Team Name: ");
+        String name = sc.nextLine();
+        System.out.println("Available specialties: " + Arrays.toString(TeamSpecialty.values()));
+        System.out.print("Enter Specialty: ");
+        TeamSpecialty spec = TeamSpecialty.valueOf(sc.nextLine().trim().toUpperCase());
+        int did = getIntInput("Enter Assigned Disaster ID: ");
+        System.out.print("Enter Team Status: ");
+        String status = sc.nextLine();
+        System.out.print("Enter Coordinates lat,lon (blank to skip): ");
+        double[] at = parseCoordinates(sc.nextLine());
+
+        RescueTeam t = createTeam(name, spec, did, status, at);
+        if (t == null) {
+            System.out.println("Disaster ID not found. Team not assigned.");
+            return;
+        }
+        System.out.println("Team assigned. ID: " + t.getId());
+    }
+
+    static void viewReport() {
+        paged(App::printReport);
+    }
+
+    // Changes are already journaled; saving folds the journal into fresh snapshot files
+    static void saveData() {
+        exclusive(() -> journal.compact(App::captureSnapshot));
+        log("Data saved by " + currentUser.getUsername());
+        System.out.println("Data saved.");
+    }
+
+    static void loadData() {
+        journal.commit();
+        try {
+            exclusive(App::loadEntities);
+        } catch (UncheckedIOException e) {
+            System.out.println("Error: " + e.getMessage() + ": " + e.getCause().getMessage());
+            return;
+        }
+        log("Data loaded by " + currentUser.getUsername());
+        System.out.println("Data loaded.");
+    }
+
+    // Starts journaling changes, then loads the data
+    static void openData() {
+        journal.track(disasters, 'D', Disaster::serialize, Disaster::getId);
+        journal.track(victims, 'V', Victim::serialize, Victim::getId);
+        journal.track(teams, 'T', RescueTeam::serialize, RescueTeam::getId);
+        loadEntities();
+        if (PERSIST_UNDO) {
+            try {
+                UndoHistory.load(histories, UNDO_FILE);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Error loading undo history: " + e.getMessage());
+            }
+        }
+    }
+
+    // Loads the snapshot files and replays the journal tail on top of them
+    static void loadEntities() {
+        boolean stored = false;
+        if (partitions != null) journal.awaitCompaction();   // its files must not be swept as leftovers
+        journal.suspend();
+        try {
+            // Read every file before clearing anything, so one that fails to load leaves the current data in place
+            List<Disaster> ds;
+            List<Victim> vs;
+            List<RescueTeam> ts;
+            if (BINARY_SNAPSHOT && new File(BinarySnapshot.FILE).exists()) {
+                try {
+                    BinarySnapshot.Contents snapshot = BinarySnapshot.read(BinarySnapshot.FILE);
+                    ds = snapshot.disasters();
+                    vs = snapshot.victims();
+                    ts = snapshot.teams();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Error loading snapshot", e);
+                }
+            } else {
+                ds = DataHandler.loadFromFile("disasters.txt", Disaster::read);
+                vs = DataHandler.loadFromFile("victims.txt", Victim::read);
+                ts = DataHandler.loadFromFile("teams.txt", RescueTeam::read);
+            }
+            List<User> us = DataHandler.loadFromFile("users.txt", User::read);
+            disasters.clear();
+            victims.clear();
+            teams.clear();
+            if (partitions != null) {
+                try {
+                    stored = partitions.open(statistics);
+                } catch (IOException e) {
+                    // Carrying on would write a manifest without the stored records
+                    throw new UncheckedIOException("Error loading partition manifest", e);
+                }
+            } else if (new File(PartitionStore.MANIFEST).exists()) {
+                System.out.println("Victims and teams are in partitioned storage; run with -Ddm.storage=partitioned to see them.");
+            }
+            disasters.putAll(ds);
+            victims.putAll(vs);
+            teams.putAll(ts);
+            if (partitions != null && !stored) partitions.adoptResident();
+            users = new java.util.concurrent.CopyOnWriteArrayList<>(us);
+            journal.replay(App::applyJournalRecord);
+        } finally {
+            journal.resume();
+        }
+        for (Disaster d : disasters) Disaster.advanceIdCounter(d.getId());
+        if (partitions != null) {
+            Victim.advanceIdCounter(partitions.maxVictimId());
+            RescueTeam.advanceIdCounter(partitions.maxTeamId());
+            // First partitioned run: split the loaded records into partition files right away
+            if (!stored && !(victims.isEmpty() && teams.isEmpty())) journal.compact(App::captureSnapshot);
+        } else {
+            for (Victim v : victims) Victim.advanceIdCounter(v.getId());
+            for (RescueTeam t : teams) RescueTeam.advanceIdCounter(t.getId());
+        }
+    }
+
+    // Deleted ids still advance the counters so they are never handed out again
+    static void applyJournalRecord(String line) {
+        boolean upsert = line.charAt(0) == '+';
+        String payload = line.substring(3);
+        switch (line.charAt(1)) {
+            case 'D' -> {
+                if (upsert) {
+                    Disaster d = complete(Disaster.deserialize(payload), line);
+                    disasters.put(d);
+                    Disaster.advanceIdCounter(d.getId());
+                } else {
+                    int id = Integer.parseInt(payload);
+                    disasters.remove(id);
+                    Disaster.advanceIdCounter(id);
+                }
+            }
+            case 'V' -> {
+                if (upsert) {
+                    Victim v = complete(Victim.deserialize(payload), line);
+                    if (partitions != null) {
+                        partitions.ensureVictimLoaded(v.getId());
+                        partitions.ensureLoaded(v.getDisasterId());
+                    }
+                    victims.put(v);
+                    Victim.advanceIdCounter(v.getId());
+                } else {
+                    int id = Integer.parseInt(payload);
+                    if (partitions != null) partitions.ensureVictimLoaded(id);
+                    victims.remove(id);
+                    Victim.advanceIdCounter(id);
+                }
+            }
+            case 'T' -> {
+                if (upsert) {
+                    RescueTeam t = complete(RescueTeam.deserialize(payload), line);
+                    if (partitions != null) {
+                        partitions.ensureTeamLoaded(t.getId());
+                        partitions.ensureLoaded(t.getAssignedDisasterId());
+                    }
+                    teams.put(t);
+                    RescueTeam.advanceIdCounter(t.getId());
+                } else {
+                    int id = Integer.parseInt(payload);
+                    if (partitions != null) partitions.ensureTeamLoaded(id);
+                    teams.remove(id);
+                    RescueTeam.advanceIdCounter(id);
+                }
+            }
+            case 'U' -> {
+                User u = complete(User.deserialize(payload), line);
+                users.removeIf(x -> x.getUsername().equals(u.getUsername()));
+                users.add(u);
+            }
+            default -> { }
+        }
+    }
+
+    // A record cut short (a torn journal append) reads back as null
+    private static <T> T complete(T item, String line) {
+        if (item == null) throw new IllegalArgumentException("Incomplete record: " + line);
+        return item;
+    }
+
+    // Captures the current records (cheap reference copies) and returns the task that writes them out
+    // Under partitioned storage victims and teams go to the changed partitions' files instead, written first
+    static Runnable captureSnapshot() {
+        DataSnapshot data = snapshot();
+        List<Disaster> ds = data.disasters();
+        List<Victim> vs = partitions == null ? data.victims() : List.of();
+        List<RescueTeam> ts = partitions == null ? data.teams() : List.of();
+        List<User> us = List.copyOf(users);
+        Runnable writePartitions = partitions == null ? () -> { } : partitions.capture();
+        return () -> {
+            writePartitions.run();
+            try {
+                if (BINARY_SNAPSHOT) {
+                    BinarySnapshot.write(BinarySnapshot.FILE, ds, vs, ts);
+                } else {
+                    DataHandler.writeSnapshot("disasters.txt", ds, Disaster::serialize);
+                    DataHandler.writeSnapshot("victims.txt", vs, Victim::serialize);
+                    DataHandler.writeSnapshot("teams.txt", ts, RescueTeam::serialize);
+                }
+                DataHandler.writeSnapshot("users.txt", us, User::serialize);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    // --convert txt2bin | bin2txt: rewrites the current data (snapshot plus journal) in the other format
+    static void convertSnapshot(String direction) {
+        try {
+            if (direction.equals("txt2bin")) {
+                disasters.putAll(DataHandler.loadFromFile("disasters.txt", Disaster::read));
+                victims.putAll(DataHandler.loadFromFile("victims.txt", Victim::read));
+                teams.putAll(DataHandler.loadFromFile("teams.txt", RescueTeam::read));
+                journal.replay(App::applyJournalRecord);
+                BinarySnapshot.write(BinarySnapshot.FILE, disasters.stream().toList(), victims.stream().toList(), teams.stream().toList());
+                System.out.println("Wrote " + BinarySnapshot.FILE);
+            } else if (direction.equals("bin2txt")) {
+                BinarySnapshot.Contents snapshot = BinarySnapshot.read(BinarySnapshot.FILE);
+                disasters.putAll(snapshot.disasters());
+                victims.putAll(snapshot.victims());
+                teams.putAll(snapshot.teams());
+                journal.replay(App::applyJournalRecord);
+                DataHandler.writeSnapshot("disasters.txt", disasters, Disaster::serialize);
+                DataHandler.writeSnapshot("victims.txt", victims, Victim::serialize);
+                DataHandler.writeSnapshot("teams.txt", teams, RescueTeam::serialize);
+                System.out.println("Wrote disasters.txt, victims.txt and teams.txt");
+            } else {
+                System.out.println("Usage: java App --convert txt2bin|bin2txt");
+            }
+        } catch (IOException e) {
+            System.out.println("Conversion failed: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            System.out.println("Conversion failed: " + e.getMessage() + ": " + e.getCause().getMessage());
+        }
+    }
+
+    // Reads back from the log segments on disk; logs are written continuously by the audit writer thread
+    static void viewLogs() {
+        System.out.println("\n--- Disaster History/Logs ---");
+        System.out.println("1. All Logs");
+        System.out.println("2. Logs by User");
+        System.out.println("3. Logs in Time Range");
+        System.out.println("4. Logs by User in Time Range");
+        int ch = getIntInput("Enter your choice: ");
+        if (ch < 1 || ch > 4) {
+            System.out.println("Invalid choice!");
+            return;
+        }
+        String user = null;
+        if (ch == 2 || ch == 4) {
+            System.out.print("Enter username: ");
+            user = sc.nextLine().trim();
+        }
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        if (ch >= 3) {
+            from = readLogTime("From (yyyy-MM-dd [HH:mm[:ss]], blank for beginning): ", Long.MIN_VALUE, false);
+            to = readLogTime("To (yyyy-MM-dd [HH:mm[:ss]], blank for now): ", Long.MAX_VALUE, true);
+        }
+        audit.sync();
+        String who = user;
+        long since = from;
+        long until = to;
+        paged(out -> {
+            boolean[] any = { false };
+            try {
+                logStore.query(who, since, until, line -> {
+                    any[0] = true;
+                    out.println(line);
+                });
+            } catch (IOException e) {
+                out.println("Error reading logs: " + e.getMessage());
+            }
+            if (!any[0]) out.println("No logs recorded.");
+        });
+    }
+
+    private static final java.time.format.DateTimeFormatter LOG_TIME_INPUT = new java.time.format.DateTimeFormatterBuilder()
+        .appendPattern("yyyy-MM-dd[ HH:mm[:ss]]")
+        .parseDefaulting(java.time.temporal.ChronoField.HOUR_OF_DAY, 0)
+        .parseDefaulting(java.time.temporal.ChronoField.MINUTE_OF_HOUR, 0)
+        .parseDefaulting(java.time.temporal.ChronoField.SECOND_OF_MINUTE, 0)
+        .toFormatter();
+
+    // A date alone means the start of that day, or its end when endOfPeriod is set
+    static long readLogTime(String prompt, long blank, boolean endOfPeriod) {
+        while (true) {
+            System.out.print(prompt);
+            String input = sc.nextLine().trim();
+            if (input.isEmpty()) return blank;
+            try {
+                java.time.LocalDateTime t = java.time.LocalDateTime.parse(input, LOG_TIME_INPUT);
+                if (endOfPeriod) t = input.length() <= 10 ? t.plusDays(1).minusSeconds(1) : input.length() <= 16 ? t.plusSeconds(59) : t;
+                return t.atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
+            } catch (java.time.format.DateTimeParseException e) {
+                System.out.println("Invalid date/time. Try again.");
+            }
+        }
+    }
+
+    static void flushLogs() {
+        audit.sync();
+        System.out.println("Logs flushed to the logs/ directory");
+    }
+
+    // Edit/Delete Menu
+    static void editOrDeleteMenu() {
+        System.out.println("\n--- Edit/Delete Menu ---");
+        System.out.println("1. Edit Disaster");
+        System.out.println("2. Delete Disaster");
+        System.out.println("3. Edit Victim");
+        System.out.println("4. Delete Victim");
+        System.out.println("5. Edit Rescue Team");
+        System.out.println("6. Delete Rescue Team");
+        int ch = getIntInput("Enter your choice: ");
+        switch (ch) {
+            case 1 -> editDisaster();
+            case 2 -> deleteDisaster();
+            case 3 -> editVictim();
+            case 4 -> deleteVictim();
+            case 5 -> editRescueTeam();
+            case 6 -> deleteRescueTeam();
+            default -> System.out.println("Invalid choice!");
+        }
+    }
+
+    // Edit/Delete Disaster
+    static void editDisaster() {
+        int id = getIntInput("Enter Disaster ID to edit: ");
+        Disaster d = findDisasterById(id);
+        if (d == null) {
+            System.out.println("Disaster not found.");
+            return;
+        }
+        System.out.print("Enter new location (leave blank to keep): ");
+        String loc = sc.nextLine();
+        System.out.print("Enter new description (leave blank to keep): ");
+        String desc = sc.nextLine();
+        System.out.print("Enter new coordinates lat,lon (leave blank to keep): ");
+        String coords = sc.nextLine();
+        double[] at = coords.isBlank() ? new double[] {d.getLatitude(), d.getLongitude()} : parseCoordinates(coords);
+        Disaster newD = new Disaster(
+            id,
+            d.getType(),
+            loc.isEmpty() ? d.getLocation() : loc,
+            d.getSeverity(),
+            d.getDate(),
+            desc.isEmpty() ? d.getDescription() : desc,
+            at[0],
+            at[1]
+        );
+        striped(id, () -> {
+            disasters.put(newD);
+            remember("Disaster edited ID " + id, List.of(upsertOf('D', d.serialize())), List.of(upsertOf('D', newD.serialize())));
+        });
+        log("Disaster edited: ID " + id + " by " + actor());
+        logDisasterAction(id, "Disaster edited");
+        System.out.println("Disaster updated.");
+    }
+
+    static void deleteDisaster() {
+        int id = getIntInput("Enter Disaster ID to delete: ");
+        if (findDisasterById(id) == null) {
+            System.out.println("Disaster not found.");
+            return;
+        }
+        OnDelete policy = OnDelete.DETACH;
+        int target = 0;
+        Statistics stats = currentStatistics();   // counts stored partitions too
+        int linkedVictims = stats.victimsFor(id);
+        int linkedTeams = stats.teamsFor(id);
+        if (linkedVictims + linkedTeams > 0) {
+            System.out.println("Disaster has " + linkedVictims + " victim(s) and " + linkedTeams + " team(s).");
+            System.out.println("1. Delete them too");
+            System.out.println("2. Reassign them to another disaster");
+            System.out.println("3. Detach them (kept, reported as orphans)");
+            int ch = getIntInput("Enter your choice: ");
+            if (ch < 1 || ch > 3) {
+                System.out.println("Invalid choice!");
+                return;
+            }
+            policy = OnDelete.values()[ch - 1];
+            if (policy == OnDelete.REASSIGN) target = getIntInput("Enter Disaster ID to reassign to: ");
+        }
+        int linked = removeDisaster(id, policy, target);
+        if (linked < 0) {
+            System.out.println(policy == OnDelete.REASSIGN ? "Disaster not found or invalid target." : "Disaster not found.");
+            return;
+        }
+        log("Disaster deleted: ID " + id + " (" + linked + " linked records, " + policy + ") by " + actor());
+        logDisasterAction(id, "Disaster deleted");
+        if (policy == OnDelete.REASSIGN) logDisasterAction(target, linked + " record(s) reassigned from Disaster ID " + id);
+        System.out.println("Disaster deleted.");
+    }
+
+    // What happens to a deleted disaster's victims and teams
+    enum OnDelete { CASCADE, REASSIGN, DETACH }
+
+    // Deletes a disaster and handles its k linked victims and teams in O(k) through the foreign key
+    // indexes. Returns how many records were linked, or -1 if the disaster (or the target) is missing.
+    static int removeDisaster(int id, OnDelete policy, int target) {
+        java.util.function.Supplier<Integer> delete = () -> {
+            Disaster d = disasters.get(id);
+            if (d == null || policy == OnDelete.REASSIGN && (target == id || disasters.get(target) == null)) return -1;
+            if (policy == OnDelete.REASSIGN) {
+                resident(id);
+                resident(target);
+            }
+            List<String> undo = new ArrayList<>(List.of(upsertOf('D', d.serialize())));
+            List<String> redo = new ArrayList<>(List.of(deleteOf('D', id)));
+            if (policy == OnDelete.DETACH) {
+                disasters.remove(id);
+                remember("Disaster deleted ID " + id, undo, redo);
+                return victimsByDisaster.count(id) + teamsByDisaster.count(id);
+            }
+            List<Victim> linkedVictims = victimsByDisaster.get(id);
+            List<RescueTeam> linkedTeams = teamsByDisaster.get(id);
+            for (Victim v : linkedVictims) {
+                undo.add(upsertOf('V', v.serialize()));
+                if (policy == OnDelete.CASCADE) {
+                    victims.remove(v.getId());
+                    redo.add(deleteOf('V', v.getId()));
+                } else {
+                    Victim moved = v.withDisasterId(target);
+                    victims.put(moved);
+                    redo.add(upsertOf('V', moved.serialize()));
+                }
+            }
+            for (RescueTeam t : linkedTeams) {
+                undo.add(upsertOf('T', t.serialize()));
+                if (policy == OnDelete.CASCADE) {
+                    teams.remove(t.getId());
+                    redo.add(deleteOf('T', t.getId()));
+                } else {
+                    RescueTeam moved = t.withDisasterId(target);
+                    teams.put(moved);
+                    redo.add(upsertOf('T', moved.serialize()));
+                }
+            }
+            disasters.remove(id);
+            remember("Disaster deleted ID " + id + (policy == OnDelete.CASCADE ? " with its victims and teams"
+                : " (victims and teams moved to ID " + target + ")"), undo, redo);
+            return linkedVictims.size() + linkedTeams.size();
+        };
+        // Reassigning writes under two disasters' stripes, so it takes the whole-data lock instead
+        return policy == OnDelete.REASSIGN ? exclusive(delete) : striped(id, delete);
+    }
+
+    // Edit/Delete Victim
+    static void editVictim() {
+        int id = getIntInput("Enter Victim ID to edit: ");
+        Victim v = findVictimById(id);
+        if (v == null) {
+            System.out.println("Victim not found.");
+            return;
+        }
+        System.out.print("Enter new contact info (leave blank to keep): ");
+        String contact = sc.nextLine();
+        Victim newV = new Victim(
+            id,
+            v.getName(),
+            v.getAge(),
+            contact.isEmpty() ? v.getContact() : contact,
+            v.getInjuryLevel(),
+            v.getDisasterId()
+        );
+        striped(v.getDisasterId(), () -> {
+            victims.put(newV);
+            remember("Victim edited ID " + id, List.of(upsertOf('V', v.serialize())), List.of(upsertOf('V', newV.serialize())));
+        });
+        log("Victim edited: ID " + id + " by " + actor());
+        logDisasterAction(v.getDisasterId(), "Victim edited: " + v.getName());
+        System.out.println("Victim updated.");
+    }
+
+    static void deleteVictim() {
+        int id = getIntInput("Enter Victim ID to delete: ");
+        Victim v = findVictimById(id);
+        boolean removed = v != null && striped(v.getDisasterId(), () -> {
+            Victim old = victims.remove(id);
+            if (old == null) return false;
+            remember("Victim deleted ID " + id, List.of(upsertOf('V', old.serialize())), List.of(deleteOf('V', id)));
+            return true;
+        });
+        if (removed) {
+            log("Victim deleted: ID " + id + " by " + actor());
+            System.out.println("Victim deleted.");
+        } else {
+            System.out.println("Victim not found.");
+        }
+    }
+
+    // Edit/Delete Rescue Team
+    static void editRescueTeam() {
+        int id = getIntInput("Enter Team ID to edit: ");
+        RescueTeam t = findTeamById(id);
+        if (t == null) {
+            System.out.println("Team not found.");
+            return;
+        }
+        System.out.print("Enter new status (leave blank to keep): ");
+        String status = sc.nextLine();
+        System.out.print("Enter new coordinates lat,lon (leave blank to keep): ");
+        String coords = sc.nextLine();
+        double[] at = coords.isBlank() ? new double[] {t.getLatitude(), t.getLongitude()} : parseCoordinates(coords);
+        RescueTeam newT = new RescueTeam(
+            id,
+            t.getTeamName(),
+            t.getSpecialty(),
+            t.getAssignedDisasterId(),
+            status.isEmpty() ? t.getStatus() : status,
+            at[0],
+            at[1]
+        );
+        striped(t.getAssignedDisasterId(), () -> {
+            teams.put(newT);
+            remember("Team edited ID " + id, List.of(upsertOf('T', t.serialize())), List.of(upsertOf('T', newT.serialize())));
+        });
+        log("Team edited: ID " + id + " by " + actor());
+        logDisasterAction(t.getAssignedDisasterId(), "Team edited: " + t.getTeamName());
+        System.out.println("Team updated.");
+    }
+
+    static void deleteRescueTeam() {
+        int id = getIntInput("Enter Team ID to delete: ");
+        RescueTeam t = findTeamById(id);
+        boolean removed = t != null && striped(t.getAssignedDisasterId(), () -> {
+            RescueTeam old = teams.remove(id);
+            if (old == null) return false;
+            remember("Team deleted ID " + id, List.of(upsertOf('T', old.serialize())), List.of(deleteOf('T', id)));
+            return true;
+        });
+        if (removed) {
+            log("Team deleted: ID " + id + " by " + actor());
+            System.out.println("Team deleted.");
+        } else {
+            System.out.println("Team not found.");
+        }
+    }
+
+    // Statistics and Analytics
+    static void showStatistics() {
+        printStatistics(System.out);
+    }
+
+    // 1. Advanced Search and Filtering
+    static void searchMenu() {
+        System.out.println("\n--- Search Menu ---");
+        System.out.println("1. Search Disasters by Type");
+        System.out.println("2. Search Disasters by Location/Description (partial or misspelled words)");
+        System.out.println("3. Search Victims by Name/Injury Level");
+        System.out.println("4. Filter Teams by Specialty");
+        System.out.println("5. Filter Victims by Injury Level");
+        System.out.println("6. Filter Teams by Status");
+        int ch = getIntInput("Enter your choice: ");
+        String prompt = switch (ch) {
+            case 1 -> "Enter type: ";
+            case 2, 3 -> "Enter words: ";
+            case 4 -> "Enter specialty: ";
+            case 5 -> "Enter injury level: ";
+            case 6 -> "Enter status: ";
+            default -> null;
+        };
+        if (prompt == null) {
+            System.out.println("Invalid choice!");
+            return;
+        }
+        System.out.print(prompt);
+        String value = sc.nextLine();
+        paged(out -> printSearch(out, ch, value));
+    }
+
+    // Grouped counts over any entity
+    static void analytics() {
+        System.out.println("\n--- Analytics ---");
+        System.out.print("Of (disasters/victims/teams): ");
+        String source = sc.nextLine();
+        System.out.println("Fields: " + Arrays.toString(Aggregation.Field.values()).toLowerCase(Locale.ROOT)
+            + " (injury and age_band for victims, specialty and status for teams)");
+        System.out.print("Group by (comma-separated, blank for totals): ");
+        String groupBy = sc.nextLine();
+        System.out.print("Count distinct (field, blank for none): ");
+        String distinct = sc.nextLine();
+        Aggregation.Query query;
+        try {
+            query = Aggregation.Query.parse(source, groupBy, distinct);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+        paged(out -> printAggregate(out, query));
+    }
+
+    // Geospatial queries over the coordinate grids
+    static void nearbySearch() {
+        System.out.println("\n--- Nearby Search ---");
+        System.out.println("1. Nearest Teams to a Disaster");
+        System.out.println("2. Disasters within Distance of a Point");
+        System.out.println("3. Teams within Distance of a Disaster");
+        int ch = getIntInput("Enter your choice: ");
+        try {
+            switch (ch) {
+                case 1 -> {
+                    int did = getIntInput("Enter Disaster ID: ");
+                    int k = getIntInput("How many teams: ");
+                    System.out.print("Specialty (blank for any): ");
+                    String spec = sc.nextLine().trim();
+                    printNearestTeams(System.out, did, k, spec.isEmpty() ? null : TeamSpecialty.valueOf(spec.toUpperCase()));
+                }
+                case 2 -> {
+                    System.out.print("Enter Coordinates lat,lon: ");
+                    double[] at = parseCoordinates(sc.nextLine());
+                    if (Double.isNaN(at[0])) throw new IllegalArgumentException("Coordinates are required");
+                    int km = getIntInput("Within km: ");
+                    List<GeoIndex.Near<Disaster>> near = disasterGeo.within(at[0], at[1], km, d -> true);
+                    if (near.isEmpty()) System.out.println("No disasters in range.");
+                    near.forEach(n -> System.out.printf("%.1f km - %s%n", n.km(), n.item()));
+                }
+                case 3 -> {
+                    Disaster d = findDisasterById(getIntInput("Enter Disaster ID: "));
+                    if (d == null || !d.hasCoordinates()) {
+                        System.out.println(d == null ? "Disaster not found." : "Disaster has no coordinates.");
+                        return;
+                    }
+                    int km = getIntInput("Within km: ");
+                    List<GeoIndex.Near<RescueTeam>> near = teamGeo.within(d.getLatitude(), d.getLongitude(), km, t -> true);
+                    if (near.isEmpty()) System.out.println("No teams in range.");
+                    near.forEach(n -> System.out.printf("%.1f km - %s%n", n.km(), n.item()));
+                }
+                default -> System.out.println("Invalid choice!");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    // 2. Sorting and ranged queries, answered from the ordered indexes without sorting
+    static void sortMenu() {
+        System.out.println("\n--- Sort Menu ---");
+        System.out.println("1. Sort Disasters by Date");
+        System.out.println("2. Sort Victims by Age");
+        System.out.println("3. Disasters between Dates");
+        System.out.println("4. Latest N Disasters");
+        System.out.println("5. Most Severe N Disasters");
+        System.out.println("6. Victims in Age Band");
+        int ch = getIntInput("Enter your choice: ");
+        switch (ch) {
+            case 1 -> paged(out -> {
+                disastersByDate.all(false).forEach(out::println);
+                int undated = disasters.size() - disastersByDate.size();
+                if (undated > 0) out.println(undated + " disaster(s) without a dd-MM-yyyy date not listed.");
+            });
+            case 2 -> paged(out -> victimsByAge(OrderedIndex.NONE + 1, Integer.MAX_VALUE).forEach(out::println));
+            case 3 -> {
+                int from = Disaster.epochDay(getDateInput("From date (dd-MM-yyyy): "));
+                int to = Disaster.epochDay(getDateInput("To date (dd-MM-yyyy): "));
+                paged(out -> printRanked(out, disastersByDate.range(from, to, false, Integer.MAX_VALUE)));
+            }
+            case 4 -> {
+                int n = getIntInput("How many: ");
+                paged(out -> printRanked(out, disastersByDate.top(n)));
+            }
+            case 5 -> {
+                int n = getIntInput("How many: ");
+                paged(out -> printRanked(out, disastersBySeverity.top(n)));
+            }
+            case 6 -> {
+                int from = getIntInput("From age: ");
+                int to = getIntInput("To age: ");
+                paged(out -> printRanked(out, victimsByAge(from, to)));
+            }
+            default -> System.out.println("Invalid choice!");
+        }
+    }
+
+    // The age index only covers resident victims, so partitioned storage sorts a scan of every partition
+    static List<Victim> victimsByAge(int from, int to) {
+        if (partitions == null) return victimsByAge.range(from, to, false, Integer.MAX_VALUE);
+        return allVictims(snapshot()).filter(v -> v.getAge() >= from && v.getAge() <= to)
+            .sorted(Comparator.comparingInt(Victim::getAge).thenComparingInt(Victim::getId)).toList();
+    }
+
+    static void printRanked(PrintStream out, List<?> items) {
+        if (items.isEmpty()) out.println("No matches.");
+        items.forEach(out::println);
+    }
+
+    // 3. Undo/Redo
+    static void undo() {
+        System.out.println(undoLast());
+    }
+    static void redo() {
+        System.out.println(redoLast());
+    }
+
+    static String upsertOf(char kind, String record) { return Journal.line('+', kind, record); }
+    static String deleteOf(char kind, int id) { return Journal.line('-', kind, Integer.toString(id)); }
+
+    // Adds a command to actor()'s history: undo restores what it changed, redo re-applies it
+    static void remember(String label, List<String> undo, List<String> redo) {
+        history(actor()).record(new UndoHistory.Command(label, undo.toArray(new String[0]), redo.toArray(new String[0])));
+        undoDirty = true;
+    }
+
+    static UndoHistory history(String user) {
+        return histories.computeIfAbsent(user, u -> new UndoHistory());
+    }
+
+    // A command is only reversed while the data still looks the way it left it, so one user's
+    // undo never silently overwrites another user's later change to the same records
+    static String undoLast() {
+        return exclusive(() -> {
+            UndoHistory history = history(actor());
+            UndoHistory.Command c = history.nextUndo();
+            if (c == null) return "Nothing to undo.";
+            if (!Arrays.stream(c.redo()).allMatch(App::isCurrent)) return "Cannot undo \"" + c.label() + "\": the data has changed since.";
+            for (String line : c.undo()) applyJournalRecord(line);
+            history.undone();
+            undoDirty = true;
+            log("Undo: " + c.label() + " by " + actor());
+            return "Undo performed: " + c.label();
+        });
+    }
+
+    static String redoLast() {
+        return exclusive(() -> {
+            UndoHistory history = history(actor());
+            UndoHistory.Command c = history.nextRedo();
+            if (c == null) return "Nothing to redo.";
+            if (!Arrays.stream(c.undo()).allMatch(App::isCurrent)) return "Cannot redo \"" + c.label() + "\": the data has changed since.";
+            for (String line : c.redo()) applyJournalRecord(line);
+            history.redone();
+            undoDirty = true;
+            log("Redo: " + c.label() + " by " + actor());
+            return "Redo performed: " + c.label();
+        });
+    }
+
+    // Whether a journal record describes the current state: the record is stored as is, or the id is absent
+    static boolean isCurrent(String line) {
+        String payload = line.substring(3);
+        boolean upsert = line.charAt(0) == '+';
+        return switch (line.charAt(1)) {
+            case 'D' -> upsert ? payload.equals(serialized(disasters.get(Disaster.deserialize(payload).getId()), Disaster::serialize))
+                : disasters.get(Integer.parseInt(payload)) == null;
+            case 'V' -> upsert ? payload.equals(serialized(findVictimById(Victim.deserialize(payload).getId()), Victim::serialize))
+                : findVictimById(Integer.parseInt(payload)) == null;
+            case 'T' -> upsert ? payload.equals(serialized(findTeamById(RescueTeam.deserialize(payload).getId()), RescueTeam::serialize))
+                : findTeamById(Integer.parseInt(payload)) == null;
+            default -> false;
+        };
+    }
+
+    private static <T> String serialized(T item, java.util.function.Function<T, String> serializer) {
+        return item == null ? null : serializer.apply(item);
+    }
+
+    // 4. Notifications/Alerts
+    static void showAlerts() {
+        printAlerts(System.out);
+    }
+
+    // 6. Password Change
+    static void changePassword() {
+        System.out.print("Enter current password: ");
+        String oldPwd = sc.nextLine();
+        if (!currentUser.getPassword().equals(oldPwd)) {
+            System.out.println("Incorrect password.");
+            return;
+        }
+        System.out.print("Enter new password: ");
+        String newPwd = sc.nextLine();
+        exclusive(() -> {
+            for (User u : users) {
+                if (u.getUsername().equals(currentUser.getUsername())) {
+                    User updated = new User(u.getUsername(), newPwd, u.getRole());
+                    users.remove(u);
+                    users.add(updated);
+                    journal.upsert('U', updated.serialize());
+                    currentUser = updated;
+                    break;
+                }
+            }
+        });
+        log("Password changed for user: " + actor());
+        System.out.println("Password changed successfully.");
+    }
+
+    // 7. Disaster Timeline (per-disaster logs)
+    static void logDisasterAction(int disasterId, String action) {
+        timelines.append(disasterId, logEntry(action));
+    }
+    static void viewDisasterTimeline() {
+        int id = getIntInput("Enter Disaster ID: ");
+        int total = timelines.size(id);
+        if (total == 0) {
+            System.out.println("No timeline for this disaster.");
+            return;
+        }
+        System.out.println("Timeline has " + total + " entries.");
+        System.out.println("1. Latest entries");
+        System.out.println("2. From entry number");
+        int ch = getIntInput("Enter your choice: ");
+        if (ch != 1 && ch != 2) {
+            System.out.println("Invalid choice!");
+            return;
+        }
+        int from = ch == 2 ? Math.max(1, getIntInput("Start from entry (1-" + total + "): ")) - 1 : -1;
+        int count = Math.max(1, getIntInput("Number of entries: "));
+        try {
+            List<String> entries = ch == 1 ? timelines.latest(id, count) : timelines.page(id, from, count);
+            if (entries.isEmpty()) System.out.println("No entries in that range.");
+            entries.forEach(System.out::println);
+        } catch (IOException e) {
+            System.out.println("Error reading timeline: " + e.getMessage());
+        }
+    }
+
+    // 8. Data Export (CSV)
+    static void exportData() {
+        System.out.println("1. Disasters");
+        System.out.println("2. Victims");
+        System.out.println("3. Rescue Teams");
+        System.out.println("4. Full Report (disasters joined with victims and teams)");
+        int ch = getIntInput("Enter your choice: ");
+        if (ch < 1 || ch > 4) {
+            System.out.println("Invalid choice!");
+            return;
+        }
+        String[] names = {"disasters", "victims", "teams", "report"};
+        System.out.print("Compress with gzip? (y/n): ");
+        boolean gzip = sc.nextLine().trim().equalsIgnoreCase("y");
+        int partMb = getIntInput("Split into parts of N MB (0 = single file): ");
+        try {
+            CsvExporter export = exportCsv(ch, names[ch - 1] + "_export", gzip, Math.max(0, partMb) * (1L << 20));
+            System.out.println("Exported " + export.rows() + " rows to " + String.join(", ", export.files()));
+        } catch (IOException e) {
+            System.out.println("Export failed: " + e.getMessage());
+        }
+    }
+
+    // kind: 1 disasters, 2 victims, 3 teams, 4 report; streams from one snapshot
+    static CsvExporter exportCsv(int kind, String base, boolean gzip, long partBytes) throws IOException {
+        DataSnapshot data = snapshot();
+        String header = switch (kind) {
+            case 1 -> "ID,Type,Location,Severity,Date,Description,Latitude,Longitude";
+            case 2 -> "ID,Name,Age,Contact,InjuryLevel,DisasterID";
+            case 3 -> "ID,TeamName,Specialty,DisasterID,Status,Latitude,Longitude";
+            default -> "DisasterID,Type,Location,Severity,Date,Description,Kind,ID,Name,Age,Contact,InjuryLevel,Specialty,Status";
+        };
+        try (CsvExporter out = new CsvExporter(base, header, gzip, partBytes)) {
+            switch (kind) {
+                case 1 -> {
+                    for (Disaster d : data.disasters()) {
+                        coordinateFields(disasterFields(out, d), d.hasCoordinates(), d.getLatitude(), d.getLongitude()).endRow();
+                    }
+                }
+                case 2 -> {
+                    for (Victim v : (Iterable<Victim>) allVictims(data)::iterator) {
+                        out.field(v.getId()).field(v.getName()).field(v.getAge()).field(v.getContact())
+                            .field(v.getInjuryLevel()).field(v.getDisasterId()).endRow();
+                    }
+                }
+                case 3 -> {
+                    for (RescueTeam t : (Iterable<RescueTeam>) allTeams(data)::iterator) {
+                        out.field(t.getId()).field(t.getTeamName()).field(t.getSpecialty())
+                            .field(t.getAssignedDisasterId()).field(t.getStatus());
+                        coordinateFields(out, t.hasCoordinates(), t.getLatitude(), t.getLongitude()).endRow();
+                    }
+                }
+                default -> {
+                    for (Disaster d : data.disasters()) {
+                        List<Victim> vs = victimsOf(data, d.getId());
+                        List<RescueTeam> ts = teamsOf(data, d.getId());
+                        trimPartitions();
+                        if (vs.isEmpty() && ts.isEmpty()) disasterFields(out, d).endRow();
+                        for (Victim v : vs) {
+                            disasterFields(out, d).field("Victim").field(v.getId()).field(v.getName()).field(v.getAge())
+                                .field(v.getContact()).field(v.getInjuryLevel()).field("").field("").endRow();
+                        }
+                        for (RescueTeam t : ts) {
+                            disasterFields(out, d).field("Team").field(t.getId()).field(t.getTeamName()).field("")
+                                .field("").field("").field(t.getSpecialty()).field(t.getStatus()).endRow();
+                        }
+                    }
+                }
+            }
+            return out;
+        }
+    }
+
+    static CsvExporter disasterFields(CsvExporter out, Disaster d) {
+        return out.field(d.getId()).field(d.getType()).field(d.getLocation()).field(d.getSeverity())
+            .field(d.getDate()).field(d.getDescription());
+    }
+
+    // Blank cells when unknown
+    static CsvExporter coordinateFields(CsvExporter out, boolean present, double lat, double lon) {
+        return present ? out.field(Double.toString(lat)).field(Double.toString(lon)) : out.field("").field("");
+    }
+
+    // 9. Bulk CSV import
+    static void bulkImport() {
+        System.out.println("1. Victims (" + CsvImporter.Kind.VICTIMS.header + ")");
+        System.out.println("2. Rescue Teams (" + CsvImporter.Kind.TEAMS.header + ")");
+        int ch = getIntInput("Enter your choice: ");
+        if (ch != 1 && ch != 2) {
+            System.out.println("Invalid choice!");
+            return;
+        }
+        System.out.print("Enter CSV file path: ");
+        String path = sc.nextLine().trim();
+        runImport(ch == 1 ? CsvImporter.Kind.VICTIMS : CsvImporter.Kind.TEAMS, path);
+    }
+
+    // --import victims|teams <file>: non-interactive import, audited as "system"
+    static void importCsv(String kind, String path) {
+        CsvImporter.Kind k;
+        try {
+            k = CsvImporter.Kind.valueOf(kind.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Usage: --import victims|teams <file.csv>");
+            return;
+        }
+        try {
+            openData();
+        } catch (UncheckedIOException e) {
+            System.out.println("Error: " + e.getMessage() + ": " + e.getCause().getMessage());
+            return;
+        }
+        runImport(k, path);
+        commitChanges();
+        journal.close();
+        timelines.close();
+        audit.close();
+    }
+
+    static void runImport(CsvImporter.Kind kind, String path) {
+        if (!new File(path).isFile()) {
+            System.out.println("File not found: " + path);
+            return;
+        }
+        try {
+            CsvImporter.Result result = new CsvImporter(kind, path, actor()).run();
+            System.out.println("Read " + result.rows() + " rows in " + result.millis() + " ms: "
+                + result.imported() + " imported, " + result.rejected() + " rejected.");
+            if (result.rejected() > 0) System.out.println("Rejected rows written to " + path + ".rejects");
+        } catch (IOException e) {
+            System.out.println("Import failed: " + e.getMessage());
+        }
+    }
+
+    // Utility methods
+    static Disaster findDisasterById(int id) {
+        return disasters.get(id);
+    }
+    static Victim findVictimById(int id) {
+        if (partitions != null) partitions.ensureVictimLoaded(id);
+        return victims.get(id);
+    }
+    static RescueTeam findTeamById(int id) {
+        if (partitions != null) partitions.ensureTeamLoaded(id);
+        return teams.get(id);
+    }
+    static String actor() {
+        User user = requestUser.get();
+        if (user == null) user = currentUser;
+        return user != null ? user.getUsername() : "system";
+    }
+    static void log(String action) {
+        audit.log(actor(), action);
+    }
+    static String logEntry(String action) {
+        return AuditLog.format(System.currentTimeMillis(), actor(), action);
+    }
+}
+
+
@@ -0,0 +1,41 @@
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+// Once the writer thread has failed, logging and closing must carry on without blocking: the events are
+// dropped and counted instead of filling the ring and hanging every caller
+class AuditLogTest {
+    static final int RING = 8;
+
+    @TempDir
+    File dir;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void deadWriterDoesNotBlock(boolean checked) {
+        LogStore failing = new LogStore(dir.getPath()) {
+            @Override
+            public synchronized void append(long ts, String user, String line) throws IOException {
+                if (checked) throw new IOException("disk full");
+                throw new UncheckedIOException(new IOException("segment roll failed"));
+            }
+        };
+        AuditLog log = new AuditLog(failing, RING);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < RING * 10; i++) log.log("admin", "Event " + i);
+            log.sync();
+            log.close();
+        });
+        // At most the first batch and one ring's worth were taken before the writer stopped
+        long dropped = log.dropped();
+        assertTrue(dropped >= RING * 10 - 1 - RING, "dropped " + dropped);
+    }
+}
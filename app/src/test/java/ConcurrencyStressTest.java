@@ -0,0 +1,125 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+// Writers on many disasters at once (striped adds, cascading and reassigning deletes, per-user undo/redo)
+// with a reader taking snapshots throughout. Every id handed out must be unique, and every snapshot and
+// the final state must match a recount.
+class ConcurrencyStressTest {
+    static final int WRITERS = Integer.getInteger("dm.stress.writers", 8);
+    static final int OPERATIONS = Integer.getInteger("dm.stress.operations", 3000);
+    static final int DISASTERS = 32;
+    static final double[] NOWHERE = {Double.NaN, Double.NaN};
+
+    final Set<Integer> disasterIds = ConcurrentHashMap.newKeySet();
+    final Set<Integer> victimIds = ConcurrentHashMap.newKeySet();
+    final Set<Integer> teamIds = ConcurrentHashMap.newKeySet();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    @Test
+    void writersAndSnapshotReader() throws InterruptedException {
+        App.disasters.clear();
+        App.victims.clear();
+        App.teams.clear();
+        App.histories.clear();
+        for (int i = 0; i < DISASTERS; i++) addDisaster();
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger snapshots = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            try {
+                while (writing.get()) {
+                    DataSnapshot data = App.snapshot();
+                    assertTrue(data.statistics().matchesRecount(data.disasters(), data.victims(), data.teams()),
+                        "snapshot statistics out of sync with its data");
+                    assertEquals(data.victims().size(), data.statistics().victims());
+                    assertUnique(data.victims().stream().map(Victim::getId).toList());
+                    assertUnique(data.teams().stream().map(RescueTeam::getId).toList());
+                    snapshots.incrementAndGet();
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        }, "snapshot-reader");
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            int seed = w;
+            writers.add(new Thread(() -> {
+                // Each writer has its own undo history, as each server session does
+                App.requestUser.set(new User("writer" + seed, "", "admin"));
+                try {
+                    start.await();
+                    write(new SplittableRandom(seed));
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    App.requestUser.remove();
+                }
+            }, "writer-" + w));
+        }
+        reader.start();
+        writers.forEach(Thread::start);
+        start.countDown();
+        for (Thread t : writers) t.join();
+        writing.set(false);
+        reader.join();
+
+        if (failure.get() != null) throw new AssertionError("stress run failed", failure.get());
+        assertTrue(snapshots.get() > 0);
+        StatisticsTest.assertConsistent();
+        assertUnique(App.victims.stream().map(Victim::getId).toList());
+        assertUnique(App.teams.stream().map(RescueTeam::getId).toList());
+    }
+
+    private void write(SplittableRandom random) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            int did = anyDisaster(random);
+            int op = random.nextInt(100);
+            if (op < 45) {
+                Victim v = App.createVictim("Victim " + i, random.nextInt(90), "", "Minor", did);
+                if (v != null) assertTrue(victimIds.add(v.getId()), "victim id handed out twice: " + v.getId());
+            } else if (op < 70) {
+                RescueTeam t = App.createTeam("Team " + i, TeamSpecialty.RESCUE, did, "Deployed", NOWHERE);
+                if (t != null) assertTrue(teamIds.add(t.getId()), "team id handed out twice: " + t.getId());
+            } else if (op < 75) {
+                addDisaster();
+            } else if (op < 80) {
+                App.OnDelete policy = App.OnDelete.values()[random.nextInt(3)];
+                App.removeDisaster(did, policy, anyDisaster(random));
+            } else if (op < 90) {
+                App.undoLast();
+            } else {
+                App.redoLast();
+            }
+        }
+    }
+
+    private void addDisaster() {
+        Disaster d = App.createDisaster(DisasterType.FLOOD, "Chennai", Severity.HIGH, "01-12-2015", "Stress", NOWHERE);
+        assertTrue(disasterIds.add(d.getId()), "disaster id handed out twice: " + d.getId());
+    }
+
+    // Usually one that exists, sometimes one that was deleted
+    private int anyDisaster(SplittableRandom random) {
+        Integer[] ids = disasterIds.toArray(new Integer[0]);
+        return ids[random.nextInt(ids.length)];
+    }
+
+    private static void assertUnique(List<Integer> ids) {
+        assertEquals(ids.size(), new HashSet<>(ids).size(), "duplicate ids");
+    }
+}
@@ -0,0 +1,60 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+// A crash in the middle of a journal append leaves a torn last record. Startup must recover every record
+// before it and cut the journal back to them, rather than failing or stopping partway.
+class JournalRecoveryTest {
+    final File journal = new File(Journal.FILE);
+
+    @AfterEach
+    void cleanUp() {
+        journal.delete();
+        App.disasters.clear();
+        App.victims.clear();
+        App.teams.clear();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"+V,12,Jo", "+V,12,Jo\n", "-V,1", "-V,1x\n", "+V", "+D,7,FLOOD,Chen"})
+    void tornLastRecord(String tail) throws IOException {
+        Disaster flood = new Disaster(7, DisasterType.FLOOD, "Chennai", Severity.HIGH, "01-12-2015", "River overflow", Double.NaN, Double.NaN);
+        StringBuilder good = new StringBuilder();
+        good.append(Journal.line('+', 'D', flood.serialize())).append('\n');
+        for (int id = 10; id <= 12; id++) {
+            good.append(Journal.line('+', 'V', new Victim(id, "Victim " + id, 30, "", "Minor", 7).serialize())).append('\n');
+        }
+        good.append(Journal.line('-', 'V', "11")).append('\n');
+        good.append(Journal.line('+', 'T', new RescueTeam(3, "Chennai Rescue", TeamSpecialty.RESCUE, 7, "Deployed", Double.NaN, Double.NaN).serialize())).append('\n');
+        byte[] valid = good.toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(journal.toPath(), (good + tail).getBytes(StandardCharsets.UTF_8));
+
+        App.loadEntities();
+        assertRecovered();
+        assertEquals(valid.length, journal.length(), "journal not cut back to the last good record");
+
+        // The cut journal loads cleanly and to the same state
+        App.loadEntities();
+        assertRecovered();
+        assertEquals(valid.length, journal.length());
+    }
+
+    private void assertRecovered() {
+        assertNotNull(App.disasters.get(7));
+        assertEquals(2, App.victims.size());
+        assertNotNull(App.victims.get(10));
+        assertNull(App.victims.get(11));
+        assertEquals("Victim 12", App.victims.get(12).getName());
+        assertEquals(1, App.teams.size());
+        StatisticsTest.assertConsistent();
+    }
+}
@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+// Time-range queries across the night clocks go back (the tests run in Europe/London, see app/pom.xml).
+// Log stamps are local time, so 01:00-01:59 appears twice; no line of either pass may be missed.
+class LogStoreTest {
+    // 2024-10-27 01:00 UTC: BST ends and local time goes back from 02:00 to 01:00
+    static final long CHANGE = Instant.parse("2024-10-27T01:00:00Z").toEpochMilli();
+    static final long MINUTE = 60_000;
+
+    @TempDir
+    File dir;
+
+    // One event a minute from 90 minutes before the change to 90 minutes after, by two users in turn
+    final List<Long> times = new ArrayList<>();
+
+    @ParameterizedTest
+    @ValueSource(longs = {16L << 20, 2048})   // one segment, or many small ones
+    void rangesAcrossTheRepeatedHour(long segmentBytes) throws IOException {
+        assertEquals("Europe/London", ZoneId.systemDefault().getId());
+        LogStore store = new LogStore(dir.getPath(), segmentBytes, Long.MAX_VALUE);
+        for (long t = CHANGE - 90 * MINUTE; t <= CHANGE + 90 * MINUTE; t += MINUTE) {
+            times.add(t);
+            store.append(t, user(t), AuditLog.format(t, user(t), "Event at " + t));
+        }
+        store.flush();
+        assertRanges(store);
+        store.close();
+
+        // Reopened: the active segment's index is rebuilt from the stamps in the file
+        LogStore reopened = new LogStore(dir.getPath(), segmentBytes, Long.MAX_VALUE);
+        assertRanges(reopened);
+        reopened.close();
+    }
+
+    private void assertRanges(LogStore store) throws IOException {
+        long[][] ranges = {
+            {CHANGE - 60 * MINUTE, CHANGE - MINUTE},        // first pass through 01:xx (BST)
+            {CHANGE, CHANGE + 59 * MINUTE},                 // second pass through 01:xx (GMT)
+            {CHANGE - 30 * MINUTE, CHANGE + 30 * MINUTE},   // from the first pass into the second
+            {CHANGE + 30 * MINUTE, CHANGE + 80 * MINUTE},   // out of the second pass
+            {Long.MIN_VALUE, Long.MAX_VALUE},
+        };
+        for (long[] r : ranges) {
+            for (String user : new String[] {null, "alice"}) {
+                assertEquals(expected(user, r[0], r[1]), query(store, user, r[0], r[1]),
+                    "range " + Instant.ofEpochMilli(r[0]) + " .. " + Instant.ofEpochMilli(r[1]) + " for " + user);
+            }
+        }
+    }
+
+    private List<String> expected(String user, long from, long to) {
+        List<String> lines = new ArrayList<>();
+        for (long t : times) {
+            if (t >= from && t <= to && (user == null || user.equals(user(t)))) lines.add("Event at " + t);
+        }
+        return lines;
+    }
+
+    private static List<String> query(LogStore store, String user, long from, long to) throws IOException {
+        List<String> lines = new ArrayList<>();
+        store.query(user, from, to, line -> lines.add(line.substring(22, line.lastIndexOf(" (User: "))));
+        return lines;
+    }
+
+    private static String user(long t) {
+        return (t / MINUTE) % 2 == 0 ? "alice" : "bob";
+    }
+}
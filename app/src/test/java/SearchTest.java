@@ -0,0 +1,45 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// Searches by injury level (5) and team status (6) say "No matches." like the other searches, both for
+// values never seen and for known values nothing currently has
+class SearchTest {
+    Victim victim;
+
+    @BeforeEach
+    void reset() {
+        App.disasters.clear();
+        App.victims.clear();
+        App.teams.clear();
+        App.histories.clear();
+        Disaster flood = App.createDisaster(DisasterType.FLOOD, "Chennai", Severity.HIGH, "01-12-2015", "River overflow", StatisticsTest.NOWHERE);
+        victim = App.createVictim("Meera Iyer", 34, "", "Severe", flood.getId());
+        RescueTeam team = App.createTeam("Chennai Rescue", TeamSpecialty.RESCUE, flood.getId(), "Standby", StatisticsTest.NOWHERE);
+        App.teams.remove(team.getId());
+    }
+
+    @Test
+    void injuryLevel() {
+        assertEquals(victim + "\n", search(5, "severe"));
+        assertEquals("No matches.\n", search(5, "Never-seen injury"));
+    }
+
+    @Test
+    void teamStatus() {
+        assertEquals("No matches.\n", search(6, "Never-seen status"));
+        assertEquals("No matches.\n", search(6, "standby"));
+    }
+
+    private static String search(int kind, String value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+        App.printSearch(out, kind, value);
+        return bytes.toString(StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n");
+    }
+}
@@ -0,0 +1,128 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Scanner;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+// The incrementally maintained statistics must always equal a recount from scratch, through every kind
+// of change: adds, edits, deletes under each OnDelete policy, and undo/redo of all of them
+class StatisticsTest {
+    static final double[] NOWHERE = {Double.NaN, Double.NaN};
+
+    Disaster flood;
+    Disaster fire;
+    Disaster quake;
+
+    @BeforeEach
+    void reset() {
+        App.disasters.clear();
+        App.victims.clear();
+        App.teams.clear();
+        App.histories.clear();
+        flood = App.createDisaster(DisasterType.FLOOD, "Chennai", Severity.HIGH, "01-12-2015", "River overflow", NOWHERE);
+        fire = App.createDisaster(DisasterType.FIRE, "Los Angeles", Severity.CRITICAL, "07-01-2025", "Wildfire", new double[] {34.05, -118.24});
+        quake = App.createDisaster(DisasterType.EARTHQUAKE, "Bhuj", Severity.CRITICAL, "26-01-2001", "Tremor", NOWHERE);
+        for (Disaster d : new Disaster[] {flood, fire, quake}) {
+            for (int i = 0; i < 3; i++) App.createVictim("Victim " + d.getId() + "-" + i, 20 + i, "", i == 0 ? "Severe" : "Minor", d.getId());
+            App.createTeam("Team " + d.getId(), TeamSpecialty.RESCUE, d.getId(), "Deployed", NOWHERE);
+        }
+        App.createTeam("Medics " + flood.getId(), TeamSpecialty.MEDICAL, flood.getId(), "Standby", NOWHERE);
+        assertConsistent();
+    }
+
+    static void assertConsistent() {
+        DataSnapshot data = App.snapshot();
+        Statistics stats = data.statistics();
+        assertTrue(stats.matchesRecount(data.disasters(), data.victims(), data.teams()), "statistics out of sync with data");
+        assertEquals(data.victims().size(), stats.victims());
+        assertEquals(data.teams().size(), stats.teams());
+        Statistics current = App.currentStatistics();
+        assertTrue(current.matchesRecount(data.disasters(), data.victims(), data.teams()), "current statistics out of sync with data");
+        assertEquals(data.disasters().size(), current.disasters());
+    }
+
+    // Answers the console prompts of the next interactive command
+    static void input(Object... lines) {
+        StringBuilder text = new StringBuilder();
+        for (Object line : lines) text.append(line).append('\n');
+        App.sc = new Scanner(text.toString());
+    }
+
+    // Undoes everything recorded, then redoes it all, checking the counters after every step
+    static void undoAndRedoAll() {
+        int undone = 0;
+        while (App.undoLast().startsWith("Undo performed")) {
+            assertConsistent();
+            undone++;
+        }
+        for (int i = 0; i < undone; i++) {
+            assertTrue(App.redoLast().startsWith("Redo performed"));
+            assertConsistent();
+        }
+    }
+
+    @Test
+    void adds() {
+        Statistics stats = App.snapshot().statistics();
+        assertEquals(9, stats.victims());
+        assertEquals(4, stats.teams());
+        assertEquals(2, stats.teamsFor(flood.getId()));
+        undoAndRedoAll();
+    }
+
+    @Test
+    void edits() {
+        input(flood.getId(), "Chennai North", "Rainfall and river overflow", "13.1,80.3");
+        App.editDisaster();
+        assertConsistent();
+        int victim = App.victimsByDisaster.get(fire.getId()).get(0).getId();
+        input(victim, "9876543210");
+        App.editVictim();
+        assertConsistent();
+        int team = App.teamsByDisaster.get(quake.getId()).get(0).getId();
+        input(team, "Returning", "");
+        App.editRescueTeam();
+        assertConsistent();
+        undoAndRedoAll();
+    }
+
+    @Test
+    void deletesOfVictimsAndTeams() {
+        input(App.victimsByDisaster.get(flood.getId()).get(0).getId());
+        App.deleteVictim();
+        assertConsistent();
+        input(App.teamsByDisaster.get(flood.getId()).get(0).getId());
+        App.deleteRescueTeam();
+        assertConsistent();
+        assertEquals(8, App.snapshot().statistics().victims());
+        undoAndRedoAll();
+    }
+
+    @ParameterizedTest
+    @EnumSource(App.OnDelete.class)
+    void disasterDelete(App.OnDelete policy) {
+        int linked = App.removeDisaster(flood.getId(), policy, policy == App.OnDelete.REASSIGN ? quake.getId() : 0);
+        assertEquals(5, linked);
+        assertConsistent();
+        int expectedVictims = policy == App.OnDelete.CASCADE ? 6 : 9;
+        assertEquals(expectedVictims, App.snapshot().statistics().victims());
+        undoAndRedoAll();
+    }
+
+    @Test
+    void interactiveDisasterDeletes() {
+        // 2 = reassign to quake, then 1 = cascade what quake now holds
+        input(flood.getId(), 2, quake.getId());
+        App.deleteDisaster();
+        assertConsistent();
+        input(quake.getId(), 1);
+        App.deleteDisaster();
+        assertConsistent();
+        assertEquals(3, App.snapshot().statistics().victims());
+        undoAndRedoAll();
+    }
+}
@@ -0,0 +1,62 @@
+package dm;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Analytics queries at a given parallelism. Parallel streams started inside a pool run on that pool,
+// so each setting gets its own ForkJoinPool rather than the common one.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+@State(Scope.Benchmark)
+public class AggregationBenchmark {
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    ForkJoinPool pool;
+    Aggregation.Query injuryByTypeAndMonth;
+    Aggregation.Query teamsBySpecialty;
+
+    @Setup(Level.Trial)
+    public void start() {
+        pool = new ForkJoinPool(parallelism);
+        injuryByTypeAndMonth = Aggregation.Query.parse("victims", "type,month,injury", null);
+        teamsBySpecialty = Aggregation.Query.parse("teams", "specialty,status", "disaster");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public List<Aggregation.Row> victimsByTypeMonthInjury(Dataset data) {
+        return run(injuryByTypeAndMonth, App.allVictims(App.snapshot()));
+    }
+
+    @Benchmark
+    public List<Aggregation.Row> teamsBySpecialtyStatus(Dataset data) {
+        return run(teamsBySpecialty, App.allTeams(App.snapshot()));
+    }
+
+    private List<Aggregation.Row> run(Aggregation.Query query, java.util.stream.Stream<?> rows) {
+        return pool.submit(() -> Aggregation.run(query, App.snapshot().disasters(), rows)).join();
+    }
+}
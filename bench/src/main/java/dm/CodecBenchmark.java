@@ -0,0 +1,85 @@
+package dm;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// serialize/deserialize of single records, cycling through a batch of generated ones so the branch
+// predictor sees the usual mix of optional coordinates, escapes and blank contacts
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+    static final int BATCH = 1 << 10;
+
+    Disaster[] disasters;
+    Victim[] victims;
+    RescueTeam[] teams;
+    String[] disasterLines;
+    String[] victimLines;
+    String[] teamLines;
+    int next;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        DataGenerator generator = new DataGenerator(DataGenerator.DEFAULT_SEED);
+        disasters = generator.disasters(BATCH * 100).subList(0, BATCH).toArray(new Disaster[0]);
+        victims = generator.victims(BATCH).toArray(new Victim[0]);
+        teams = generator.teams(BATCH * 50).subList(0, BATCH).toArray(new RescueTeam[0]);
+        disasterLines = lines(List.of(disasters), Disaster::serialize);
+        victimLines = lines(List.of(victims), Victim::serialize);
+        teamLines = lines(List.of(teams), RescueTeam::serialize);
+    }
+
+    private static <T> String[] lines(List<T> items, java.util.function.Function<T, String> serializer) {
+        return items.stream().map(serializer).toArray(String[]::new);
+    }
+
+    private int index() {
+        return next = (next + 1) & (BATCH - 1);
+    }
+
+    @Benchmark
+    public String serializeDisaster() {
+        return disasters[index()].serialize();
+    }
+
+    @Benchmark
+    public Disaster deserializeDisaster() {
+        return Disaster.deserialize(disasterLines[index()]);
+    }
+
+    @Benchmark
+    public String serializeVictim() {
+        return victims[index()].serialize();
+    }
+
+    @Benchmark
+    public Victim deserializeVictim() {
+        return Victim.deserialize(victimLines[index()]);
+    }
+
+    @Benchmark
+    public String serializeTeam() {
+        return teams[index()].serialize();
+    }
+
+    @Benchmark
+    public RescueTeam deserializeTeam() {
+        return RescueTeam.deserialize(teamLines[index()]);
+    }
+}
@@ -0,0 +1,83 @@
+package dm;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compares two JMH result files written with -rf csv (or by ServerLoad), matching rows by benchmark,
+// thread count and parameters. A higher average time or a lower throughput is a slowdown. Exits with 1
+// when any benchmark got slower than the threshold, so a build script can fail on it.
+//
+//   java -cp benchmarks.jar dm.CompareResults <baseline.csv> <current.csv> [thresholdPercent]
+public class CompareResults {
+    record Result(String unit, double score, double error, boolean throughput) {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: CompareResults <baseline.csv> <current.csv> [thresholdPercent]");
+            return;
+        }
+        Map<String, Result> baseline = read(args[0]);
+        Map<String, Result> current = read(args[1]);
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        int slower = 0;
+        System.out.printf("%-70s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, Result> e : current.entrySet()) {
+            Result now = e.getValue();
+            Result before = baseline.get(e.getKey());
+            if (before == null || !before.unit().equals(now.unit())) {
+                System.out.printf("%-70s %14s %14.3f %9s%n", e.getKey(), "-", now.score(), "new");
+                continue;
+            }
+            double change = (now.score() - before.score()) / before.score() * 100;
+            boolean worse = now.throughput() ? change < 0 : change > 0;
+            // Differences inside the combined error bars are noise, not a change
+            boolean significant = Math.abs(now.score() - before.score()) > before.error() + now.error();
+            String mark = !significant || Math.abs(change) < threshold ? "" : worse ? "  SLOWER" : "  faster";
+            if (mark.equals("  SLOWER")) slower++;
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%%%s%n", e.getKey(), before.score(), now.score(), change, mark);
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) System.out.printf("%-70s %14.3f %14s %9s%n", key, baseline.get(key).score(), "-", "missing");
+        }
+        System.out.println(slower == 0 ? "No slowdowns beyond " + threshold + "%." : slower + " benchmark(s) slower by more than " + threshold + "%.");
+        if (slower > 0) System.exit(1);
+    }
+
+    // "Benchmark [threads=n] [param=value ...]" -> result, in file order
+    static Map<String, Result> read(String path) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(path))) {
+            int[] lineNo = {0};
+            List<String> header = Csv.split(Csv.readRecord(in, lineNo));
+            int mode = header.indexOf("Mode");
+            int threads = header.indexOf("Threads");
+            int score = header.indexOf("Score");
+            int error = header.indexOf("Score Error (99.9%)");
+            int unit = header.indexOf("Unit");
+            String record;
+            while ((record = Csv.readRecord(in, lineNo)) != null) {
+                List<String> fields = Csv.split(record);
+                List<String> params = new ArrayList<>();
+                if (!fields.get(threads).equals("1")) params.add("threads=" + fields.get(threads));
+                for (int i = 0; i < header.size(); i++) {
+                    String name = header.get(i);
+                    if (name.startsWith("Param: ") && !fields.get(i).isEmpty()) params.add(name.substring(7) + "=" + fields.get(i));
+                }
+                String key = shortName(fields.get(0)) + (params.isEmpty() ? "" : " " + String.join(" ", params));
+                String err = fields.get(error);
+                results.put(key, new Result(fields.get(unit), Double.parseDouble(fields.get(score)),
+                    err.isEmpty() || err.equals("NaN") ? 0 : Double.parseDouble(err), fields.get(mode).equals("thrpt")));
+            }
+        }
+        return results;
+    }
+
+    private static String shortName(String benchmark) {
+        return benchmark.startsWith("dm.") ? benchmark.substring(3) : benchmark;
+    }
+}
@@ -0,0 +1,170 @@
+package dm;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Seeded generator of realistic disasters, victims and teams. The same seed and size always produce
+// the same records, so benchmark runs and baselines compare like with like.
+//
+// A dataset of N records holds N victims, N/100 disasters and N/50 teams. Victims cluster on a few
+// large disasters, about 1% of victims and teams point at disasters that do not exist (orphans for the
+// alerts), and most disasters and teams carry coordinates near a real city.
+//
+// Also runnable on its own to write data files the app loads directly:
+//   java -cp benchmarks.jar dm.DataGenerator <records> [dir] [seed]
+public class DataGenerator {
+    public static final long DEFAULT_SEED = 20240601L;
+
+    // name, latitude, longitude
+    private static final Object[][] CITIES = {
+        {"Chennai", 13.08, 80.27}, {"Mumbai", 19.08, 72.88}, {"Kolkata", 22.57, 88.36}, {"Delhi", 28.61, 77.21},
+        {"Guwahati", 26.14, 91.74}, {"Bhuj", 23.24, 69.67}, {"Puri", 19.81, 85.83}, {"Kochi", 9.93, 76.27},
+        {"Dhaka", 23.81, 90.41}, {"Kathmandu", 27.72, 85.32}, {"Manila", 14.60, 120.98}, {"Jakarta", -6.21, 106.85},
+        {"Tokyo", 35.68, 139.69}, {"Istanbul", 41.01, 28.98}, {"Port-au-Prince", 18.59, -72.31}, {"New Orleans", 29.95, -90.07},
+        {"Los Angeles", 34.05, -118.24}, {"Valparaiso", -33.05, -71.62}, {"Christchurch", -43.53, 172.64}, {"Lisbon", 38.72, -9.14},
+    };
+    private static final String[] FIRST = {"Aarav", "Priya", "Rahul", "Ananya", "Vikram", "Meera", "Arjun", "Kavya",
+        "Rohan", "Isha", "Maria", "Jose", "Yuki", "Ahmet", "Fatima", "John", "Aisha", "Carlos", "Li", "Sofia"};
+    private static final String[] LAST = {"Sharma", "Iyer", "Das", "Khan", "Patel", "Reddy", "Nair", "Singh",
+        "Santos", "Garcia", "Tanaka", "Yilmaz", "Rahman", "Smith", "Lopez", "Chen", "Silva", "Gupta", "Bose", "Menon"};
+    private static final String[] INJURIES = {"None", "Minor", "Minor", "Minor", "Moderate", "Moderate", "Severe", "Critical"};
+    private static final String[] STATUSES = {"Available", "Deployed", "Deployed", "Deployed", "Standby", "Returning"};
+    private static final String[] UNIT = {"Alpha", "Bravo", "Charlie", "Delta", "Echo", "Foxtrot", "Unit", "Squad"};
+    private static final String[] CAUSE = {"heavy rainfall", "river overflow", "tremor", "forest fire", "storm surge",
+        "landslide", "dam breach", "cyclonic winds", "gas explosion", "flash flood"};
+    private static final String[] IMPACT = {"homes damaged", "roads blocked", "power outage", "bridge collapsed",
+        "villages cut off", "crops lost", "evacuation ordered", "hospitals overwhelmed"};
+    // Weighted towards the common cases
+    private static final DisasterType[] TYPES = {DisasterType.FLOOD, DisasterType.FLOOD, DisasterType.FLOOD,
+        DisasterType.CYCLONE, DisasterType.CYCLONE, DisasterType.EARTHQUAKE, DisasterType.FIRE, DisasterType.FIRE, DisasterType.OTHER};
+    private static final Severity[] SEVERITIES = {Severity.LOW, Severity.LOW, Severity.MEDIUM, Severity.MEDIUM,
+        Severity.MEDIUM, Severity.HIGH, Severity.HIGH, Severity.CRITICAL};
+    private static final TeamSpecialty[] SPECIALTIES = {TeamSpecialty.MEDICAL, TeamSpecialty.MEDICAL, TeamSpecialty.RESCUE,
+        TeamSpecialty.RESCUE, TeamSpecialty.RESCUE, TeamSpecialty.LOGISTICS, TeamSpecialty.FIREFIGHTING, TeamSpecialty.OTHER};
+
+    private final long seed;
+
+    public DataGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public static int disasterCount(int records) { return Math.max(10, records / 100); }
+    public static int teamCount(int records) { return Math.max(5, records / 50); }
+
+    // Disaster ids run 1..disasterCount; each entity kind has its own stream so sizes stay independent
+    public List<Disaster> disasters(int records) {
+        int n = disasterCount(records);
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Disaster> out = new ArrayList<>(n);
+        for (int id = 1; id <= n; id++) out.add(disaster(random, id));
+        return out;
+    }
+
+    public List<Victim> victims(int records) {
+        int disasters = disasterCount(records);
+        SplittableRandom random = new SplittableRandom(seed + 1);
+        List<Victim> out = new ArrayList<>(records);
+        for (int id = 1; id <= records; id++) out.add(victim(random, id, disasters));
+        return out;
+    }
+
+    public List<RescueTeam> teams(int records) {
+        int n = teamCount(records);
+        int disasters = disasterCount(records);
+        List<Disaster> placed = disasters(records);
+        SplittableRandom random = new SplittableRandom(seed + 2);
+        List<RescueTeam> out = new ArrayList<>(n);
+        for (int id = 1; id <= n; id++) out.add(team(random, id, disasters, placed));
+        return out;
+    }
+
+    private Disaster disaster(SplittableRandom random, int id) {
+        Object[] city = pick(random, CITIES);
+        String date = String.format("%02d-%02d-%04d", 1 + random.nextInt(28), 1 + random.nextInt(12), 2000 + random.nextInt(26));
+        String description = pick(random, CAUSE) + ", " + pick(random, IMPACT) + " near " + city[0];
+        boolean located = random.nextInt(100) < 85;
+        double lat = located ? (double) city[1] + random.nextDouble(-0.5, 0.5) : Double.NaN;
+        double lon = located ? (double) city[2] + random.nextDouble(-0.5, 0.5) : Double.NaN;
+        return new Disaster(id, pick(random, TYPES), (String) city[0], pick(random, SEVERITIES), date, description, lat, lon);
+    }
+
+    private Victim victim(SplittableRandom random, int id, int disasters) {
+        String name = pick(random, FIRST) + " " + pick(random, LAST);
+        // Mostly adults, with children and elderly tails
+        int age = Math.min(95, Math.max(0, (int) Math.round(35 + 18 * gaussian(random))));
+        String contact = random.nextInt(10) == 0 ? "" : "9" + String.format("%09d", random.nextLong(1_000_000_000L));
+        return new Victim(id, name, age, contact, pick(random, INJURIES), disasterFor(random, disasters));
+    }
+
+    private RescueTeam team(SplittableRandom random, int id, int disasters, List<Disaster> placed) {
+        int did = disasterFor(random, disasters);
+        TeamSpecialty specialty = pick(random, SPECIALTIES);
+        Disaster at = did <= placed.size() ? placed.get(did - 1) : null;
+        String base = at != null ? at.getLocation() : (String) pick(random, CITIES)[0];
+        String name = base + " " + specialty.name().charAt(0) + specialty.name().substring(1).toLowerCase() + " " + pick(random, UNIT) + " " + id;
+        double lat = Double.NaN;
+        double lon = Double.NaN;
+        if (at != null && at.hasCoordinates() && random.nextInt(100) < 90) {
+            lat = at.getLatitude() + random.nextDouble(-0.2, 0.2);
+            lon = at.getLongitude() + random.nextDouble(-0.2, 0.2);
+        }
+        return new RescueTeam(id, name, specialty, did, pick(random, STATUSES), lat, lon);
+    }
+
+    // Skewed so low ids are the large disasters; about 1% point past the last id
+    private static int disasterFor(SplittableRandom random, int disasters) {
+        if (random.nextInt(100) == 0) return disasters + 1 + random.nextInt(disasters);
+        double u = random.nextDouble();
+        return 1 + (int) (disasters * u * u * u);
+    }
+
+    // Roughly normal with mean 0 and deviation 1.15; enough for realistic ages
+    private static double gaussian(SplittableRandom random) {
+        double sum = 0;
+        for (int i = 0; i < 4; i++) sum += random.nextDouble(-1, 1);
+        return sum;
+    }
+
+    private static <T> T pick(SplittableRandom random, T[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    // The app's data files plus an admin login, so a generated directory can be opened with the console
+    public void write(File dir, int records) throws IOException {
+        dir.mkdirs();
+        DataHandler.saveToFile(new File(dir, "disasters.txt").getPath(), disasters(records), Disaster::serialize);
+        writeVictims(new File(dir, "victims.txt"), records);
+        DataHandler.saveToFile(new File(dir, "teams.txt").getPath(), teams(records), RescueTeam::serialize);
+        DataHandler.saveToFile(new File(dir, "users.txt").getPath(), List.of(new User("admin", "admin", "admin")), User::serialize);
+    }
+
+    // Streamed rather than listed so 10M victims do not have to fit in memory at once
+    private void writeVictims(File file, int records) throws IOException {
+        int disasters = disasterCount(records);
+        SplittableRandom random = new SplittableRandom(seed + 1);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+            for (int id = 1; id <= records; id++) {
+                writer.write(victim(random, id, disasters).serialize());
+                writer.newLine();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: DataGenerator <records> [dir] [seed]");
+            return;
+        }
+        int records = Integer.parseInt(args[0]);
+        File dir = new File(args.length > 1 ? args[1] : ".");
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        new DataGenerator(seed).write(dir, records);
+        System.out.println("Wrote " + records + " victims, " + disasterCount(records) + " disasters and "
+            + teamCount(records) + " teams to " + dir.getAbsolutePath());
+    }
+}
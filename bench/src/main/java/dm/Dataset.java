@@ -0,0 +1,51 @@
+package dm;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// The app's repositories filled with a generated dataset. Each fork is a fresh JVM, so the static
+// repositories hold exactly one size at a time.
+@State(Scope.Benchmark)
+public class Dataset {
+    @Param({"1000", "100000", "10000000"})
+    public int records;
+
+    // Listings are formatted in full and then discarded
+    static final PrintStream SINK = new PrintStream(OutputStream.nullOutputStream());
+    static final int PROBES = 1 << 12;
+
+    int[] disasterIds;
+    int[] victimIds;
+    int[] teamIds;
+    int next;
+
+    @Setup(Level.Trial)
+    public void load() {
+        DataGenerator generator = new DataGenerator(DataGenerator.DEFAULT_SEED);
+        App.disasters.putAll(generator.disasters(records));
+        App.victims.putAll(generator.victims(records));
+        App.teams.putAll(generator.teams(records));
+        // Ids seen by find*ById, including a few that miss
+        SplittableRandom random = new SplittableRandom(DataGenerator.DEFAULT_SEED);
+        disasterIds = probes(random, DataGenerator.disasterCount(records));
+        victimIds = probes(random, records);
+        teamIds = probes(random, DataGenerator.teamCount(records));
+    }
+
+    private static int[] probes(SplittableRandom random, int count) {
+        int[] ids = new int[PROBES];
+        for (int i = 0; i < PROBES; i++) ids[i] = 1 + random.nextInt(count + count / 20 + 1);
+        return ids;
+    }
+
+    int probe() {
+        return next = (next + 1) & (PROBES - 1);
+    }
+}
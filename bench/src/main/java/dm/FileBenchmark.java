@@ -0,0 +1,79 @@
+package dm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// DataHandler.loadFromFile and saveToFile on generated data files. The loader picks sequential or
+// mapped reading by file size exactly as the app does; pass -jvmArgsAppend -Ddm.loader=... to pin one.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+@State(Scope.Benchmark)
+public class FileBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    public int records;
+
+    File dir;
+    List<Victim> victims;
+    List<Disaster> disasters;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        dir = Files.createTempDirectory("dm-bench").toFile();
+        DataGenerator generator = new DataGenerator(DataGenerator.DEFAULT_SEED);
+        generator.write(dir, records);
+        victims = generator.victims(records);
+        disasters = generator.disasters(records);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public List<Victim> loadVictims() {
+        return DataHandler.loadFromFile(new File(dir, "victims.txt").getPath(), Victim::read);
+    }
+
+    @Benchmark
+    public List<Disaster> loadDisasters() {
+        return DataHandler.loadFromFile(new File(dir, "disasters.txt").getPath(), Disaster::read);
+    }
+
+    @Benchmark
+    public List<RescueTeam> loadTeams() {
+        return DataHandler.loadFromFile(new File(dir, "teams.txt").getPath(), RescueTeam::read);
+    }
+
+    @Benchmark
+    public void saveVictims() {
+        DataHandler.saveToFile(new File(dir, "victims.out").getPath(), victims, Victim::serialize);
+    }
+
+    @Benchmark
+    public void saveDisasters() {
+        DataHandler.saveToFile(new File(dir, "disasters.out").getPath(), disasters, Disaster::serialize);
+    }
+}
@@ -0,0 +1,34 @@
+package dm;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// App.find*ById over random ids, about 5% of which are missing
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class LookupBenchmark {
+    @Benchmark
+    public Disaster findDisasterById(Dataset data) {
+        return App.findDisasterById(data.disasterIds[data.probe()]);
+    }
+
+    @Benchmark
+    public Victim findVictimById(Dataset data) {
+        return App.findVictimById(data.victimIds[data.probe()]);
+    }
+
+    @Benchmark
+    public RescueTeam findTeamById(Dataset data) {
+        return App.findTeamById(data.teamIds[data.probe()]);
+    }
+}
@@ -0,0 +1,80 @@
+package dm;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The Search and Sort menu options, with the values a user would type
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class QueryBenchmark {
+    @Benchmark
+    public void searchDisastersByType(Dataset data) {
+        App.printSearch(Dataset.SINK, 1, "earthquake");
+    }
+
+    @Benchmark
+    public void searchDisastersByText(Dataset data) {
+        App.printSearch(Dataset.SINK, 2, "flod mumbai");
+    }
+
+    @Benchmark
+    public void searchVictimsByText(Dataset data) {
+        App.printSearch(Dataset.SINK, 3, "priya sharma");
+    }
+
+    @Benchmark
+    public void filterTeamsBySpecialty(Dataset data) {
+        App.printSearch(Dataset.SINK, 4, "firefighting");
+    }
+
+    @Benchmark
+    public void filterVictimsByInjury(Dataset data) {
+        App.printSearch(Dataset.SINK, 5, "critical");
+    }
+
+    @Benchmark
+    public void filterTeamsByStatus(Dataset data) {
+        App.printSearch(Dataset.SINK, 6, "standby");
+    }
+
+    @Benchmark
+    public List<Disaster> sortDisastersByDate(Dataset data) {
+        return App.disastersByDate.all(false);
+    }
+
+    @Benchmark
+    public List<Victim> sortVictimsByAge(Dataset data) {
+        return App.victimsByAge(OrderedIndex.NONE + 1, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public List<Disaster> disastersBetweenDates(Dataset data) {
+        return App.disastersByDate.range(Disaster.epochDay("01-01-2015"), Disaster.epochDay("31-12-2016"), false, Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public List<Disaster> latestDisasters(Dataset data) {
+        return App.disastersByDate.top(10);
+    }
+
+    @Benchmark
+    public List<Disaster> mostSevereDisasters(Dataset data) {
+        return App.disastersBySeverity.top(10);
+    }
+
+    @Benchmark
+    public List<Victim> victimsInAgeBand(Dataset data) {
+        return App.victimsByAge(60, 70);
+    }
+}
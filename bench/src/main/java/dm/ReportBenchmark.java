@@ -0,0 +1,40 @@
+package dm;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The listings behind viewReport, showStatistics and showAlerts, printed to a discarding stream so only
+// building and formatting are measured, not the terminal
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class ReportBenchmark {
+    @Benchmark
+    public void viewReport(Dataset data) {
+        App.printReport(Dataset.SINK);
+    }
+
+    @Benchmark
+    public void showStatistics(Dataset data) {
+        App.printStatistics(Dataset.SINK);
+    }
+
+    @Benchmark
+    public void showAlerts(Dataset data) {
+        App.printAlerts(Dataset.SINK);
+    }
+
+    @Benchmark
+    public void viewDisasters(Dataset data) {
+        App.printDisasters(Dataset.SINK);
+    }
+}
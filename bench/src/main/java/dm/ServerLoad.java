@@ -0,0 +1,138 @@
+package dm;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.math3.distribution.TDistribution;
+
+// Load driver for the HTTP server: an in-process DisasterServer over a generated dataset, hit by 1, 2, 4 ...
+// maxClients concurrent clients, each on its own HttpClient with a keep-alive connection and sending its next
+// request as soon as the last one is answered. Reports requests per second for POST /login, GET /disasters
+// and GET /report at every client count, as rows in JMH's CSV layout (thrpt mode) so CompareResults can diff
+// them against bench/baselines.
+//
+//   java -cp benchmarks.jar dm.ServerLoad [records] [maxClients] [results.csv]
+public class ServerLoad {
+    static final int WARMUP_SECONDS = Integer.getInteger("dm.load.warmupSeconds", 2);
+    static final int ITERATIONS = Integer.getInteger("dm.load.iterations", 5);
+    static final String[] ROUTES = {"login", "disasters", "report"};
+
+    record Row(String route, int clients, int records, double score, double error) {}
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int maxClients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        Dataset data = new Dataset();
+        data.records = records;
+        data.load();
+        App.users = new java.util.concurrent.CopyOnWriteArrayList<>(List.of(new User("admin", "admin", "admin")));
+        DisasterServer server = new DisasterServer(0);
+        server.start();
+        List<Row> rows = new ArrayList<>();
+        try {
+            String base = "http://127.0.0.1:" + server.port();
+            System.out.printf("%-10s %8s %12s %12s %14s%n", "Route", "Clients", "Requests/s", "Error", "Mean latency");
+            for (String route : ROUTES) {
+                for (int clients = 1; clients <= maxClients; clients *= 2) {
+                    Row row = measure(base, route, clients, records);
+                    rows.add(row);
+                    System.out.printf("%-10s %8d %12.1f %12.1f %11.2f ms%n", route, clients, row.score(), row.error(),
+                        clients * 1000.0 / row.score());
+                }
+            }
+        } finally {
+            server.stop();
+        }
+        if (args.length > 2) write(args[2], rows);
+    }
+
+    // Warmup, then ITERATIONS one-second windows; the score is the mean of the windows' request rates
+    private static Row measure(String base, String route, int clients, int records) throws Exception {
+        AtomicLong completed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch ready = new CountDownLatch(clients);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Thread t = new Thread(() -> {
+                HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+                HttpRequest login = HttpRequest.newBuilder(URI.create(base + "/login"))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString("username=admin&password=admin")).build();
+                HttpRequest request;
+                try {
+                    String token = http.send(login, HttpResponse.BodyHandlers.ofString()).body().trim();
+                    request = route.equals("login") ? login
+                        : HttpRequest.newBuilder(URI.create(base + "/" + route)).header("Authorization", "Bearer " + token).GET().build();
+                } catch (IOException | InterruptedException e) {
+                    failed.incrementAndGet();
+                    ready.countDown();
+                    return;
+                }
+                ready.countDown();
+                while (running.get()) {
+                    try {
+                        HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() == 200) completed.incrementAndGet();
+                        else failed.incrementAndGet();
+                    } catch (IOException | InterruptedException e) {
+                        failed.incrementAndGet();
+                    }
+                }
+            }, "load-client-" + i);
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+        ready.await();
+        Thread.sleep(WARMUP_SECONDS * 1000L);
+        double[] rates = new double[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long before = completed.get();
+            long start = System.nanoTime();
+            Thread.sleep(1000);
+            rates[i] = (completed.get() - before) * 1e9 / (System.nanoTime() - start);
+        }
+        running.set(false);
+        for (Thread t : threads) t.join();
+        if (failed.get() > 0) throw new IllegalStateException(failed.get() + " failed request(s) on " + route + " at " + clients + " clients");
+        return new Row(route, clients, records, mean(rates), error(rates));
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) sum += v;
+        return sum / values.length;
+    }
+
+    // Half-width of the 99.9% confidence interval, as JMH reports it
+    private static double error(double[] values) {
+        if (values.length < 2) return Double.NaN;
+        double mean = mean(values);
+        double squares = 0;
+        for (double v : values) squares += (v - mean) * (v - mean);
+        double deviation = Math.sqrt(squares / (values.length - 1));
+        double t = new TDistribution(values.length - 1).inverseCumulativeProbability(1 - 0.001 / 2);
+        return t * deviation / Math.sqrt(values.length);
+    }
+
+    private static void write(String path, List<Row> rows) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(path))) {
+            out.println("\"Benchmark\",\"Mode\",\"Threads\",\"Samples\",\"Score\",\"Score Error (99.9%)\",\"Unit\",\"Param: records\"");
+            for (Row r : rows) {
+                out.printf(java.util.Locale.ROOT, "\"dm.ServerLoad.%s\",\"thrpt\",%d,%d,%f,%f,\"ops/s\",%d%n",
+                    r.route(), r.clients(), ITERATIONS, r.score(), r.error(), r.records());
+            }
+        }
+    }
+}